@@ -0,0 +1,70 @@
+package com.jeckchen.demo.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SystemMetricsProperties.java
+ * @description 系统指标采集相关配置项
+ * @date 2026年10月17日
+ */
+@Data
+@Component
+@ConfigurationProperties("system.metrics")
+public class SystemMetricsProperties {
+
+    /** 采样间隔（毫秒），所有请求共用最近一次的采样结果 */
+    private long sampleIntervalMillis = 1000L;
+
+    /** 实时推送连接的超时时间（毫秒），超时后浏览器的EventSource会自动重连 */
+    private long streamTimeoutMillis = 30 * 60 * 1000L;
+
+    /** 最多同时订阅实时推送的连接数 */
+    private int maxSubscribers = 200;
+
+    /** 历史数据配置 */
+    private History history = new History();
+
+    /** 主机指标采集配置 */
+    private Host host = new Host();
+
+    @Data
+    public static class History {
+        /** 分辨率层级：每层以固定分辨率保留固定时长，内存在启动时按层级一次分配 */
+        private List<Tier> tiers = new ArrayList<>(List.of(
+                new Tier(1000L, 10 * 60 * 1000L),
+                new Tier(10 * 1000L, 6 * 60 * 60 * 1000L),
+                new Tier(60 * 1000L, 7 * 24 * 60 * 60 * 1000L)));
+
+        /** 单次查询最多返回的点数，步长过小时自动放大 */
+        private int maxPoints = 1000;
+    }
+
+    @Data
+    public static class Host {
+        /** 是否采集主机指标；Linux读取/proc，其它平台使用JVM提供的数据 */
+        private boolean enabled = true;
+
+        /** 重新发现CPU核、磁盘和网络接口的间隔（毫秒） */
+        private long deviceRefreshMillis = 60 * 1000L;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Tier {
+        /** 每个数据点覆盖的时长（毫秒） */
+        private long resolutionMillis;
+
+        /** 保留时长（毫秒） */
+        private long retentionMillis;
+    }
+}
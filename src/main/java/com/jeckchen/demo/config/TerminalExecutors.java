@@ -0,0 +1,136 @@
+package com.jeckchen.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalExecutors.java
+ * @description 终端相关的线程池
+ * 输出泵等长时间阻塞的任务在JDK 24+上运行于虚拟线程，否则运行于有界的命名线程池。
+ * SSH输出泵阻塞在JSch的PipedInputStream.read()上，即synchronized中的wait()：JDK 21-23里
+ * 这会占住载体线程，调度器最多只补偿到jdk.virtualThreadScheduler.maxPoolSize（默认256），
+ * 虚拟线程并不比有界线程池多出容量，只是把上限藏了起来；JDK 24起（JEP 491）不再占住载体线程。
+ * 不注册为Executor类型的Bean，避免覆盖Spring Boot默认的applicationTaskExecutor
+ * @date 2026年10月17日
+ */
+@Component
+public class TerminalExecutors {
+
+    /**
+     * 执行模式
+     */
+    public enum Mode {
+        /** JDK 24+使用虚拟线程，否则使用有界线程池 */
+        AUTO,
+        /** 强制使用虚拟线程，JDK不支持时启动失败；JDK 21-23上SSH输出泵会占住载体线程 */
+        VIRTUAL,
+        /** 有界线程池 */
+        BOUNDED
+    }
+
+    // synchronized中阻塞不再占住载体线程的最低JDK版本
+    private static final int MIN_UNPINNED_FEATURE_VERSION = 24;
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final boolean virtual;
+
+    public TerminalExecutors(TerminalProperties terminalProperties, MeterRegistry meterRegistry) {
+        TerminalProperties.Executor config = terminalProperties.getExecutor();
+        boolean tryVirtual = config.getMode() == Mode.VIRTUAL
+                || (config.getMode() == Mode.AUTO && Runtime.version().feature() >= MIN_UNPINNED_FEATURE_VERSION);
+        ExecutorService virtualExecutor = tryVirtual ? createVirtualThreadExecutor() : null;
+        if (virtualExecutor == null && config.getMode() == Mode.VIRTUAL) {
+            throw new IllegalStateException("当前JDK不支持虚拟线程: " + System.getProperty("java.version"));
+        }
+        this.virtual = virtualExecutor != null;
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry,
+                virtual ? virtualExecutor : createBoundedExecutor(config.getMaxThreads()), "terminal");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(namedDaemonThreadFactory("terminal-scheduler-"));
+        System.out.println("终端线程模型: " + (virtual ? "虚拟线程" : "有界线程池, 最大线程数=" + config.getMaxThreads()));
+    }
+
+    /**
+     * 输出泵、发送队列、Tab补全等任务使用的执行器
+     * 有界模式下线程耗尽时提交任务会抛出RejectedExecutionException
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 输出合并刷新等短小定时任务使用的调度器，任务中不能有阻塞操作
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("终端线程池未能在5秒内退出");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，项目以JDK 17编译，运行在JDK 21+时才可用
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "terminal-vt-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 有界线程池：不排队，线程耗尽时直接拒绝，避免长时间运行的输出泵在队列中饿死
+     */
+    private static ExecutorService createBoundedExecutor(int maxThreads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), namedDaemonThreadFactory("terminal-worker-"),
+                (task, executor) -> {
+                    throw new RejectedExecutionException("终端线程数已达上限: " + maxThreads);
+                });
+        return pool;
+    }
+
+    private static ThreadFactory namedDaemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,211 @@
+package com.jeckchen.demo.config;
+
+import com.jeckchen.demo.handler.TerminalOutboundQueue;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalProperties.java
+ * @description 终端相关配置项
+ * @date 2026年10月17日
+ */
+@Data
+@Component
+@ConfigurationProperties("terminal")
+public class TerminalProperties {
+
+    /** 终端输出合并配置 */
+    private Output output = new Output();
+
+    /** WebSocket发送队列配置 */
+    private Outbound outbound = new Outbound();
+
+    /** 终端线程模型配置 */
+    private Executor executor = new Executor();
+
+    /** SSH连接池配置 */
+    private Ssh ssh = new Ssh();
+
+    /** 终端断线恢复配置 */
+    private Resume resume = new Resume();
+
+    /** 单连接多终端复用配置 */
+    private Multiplex multiplex = new Multiplex();
+
+    /** Tab补全配置 */
+    private Completion completion = new Completion();
+
+    /** 持久化Shell会话配置 */
+    private Session session = new Session();
+
+    /** 预热shell进程池配置 */
+    private Pool pool = new Pool();
+
+    /** 单次命令执行配置 */
+    private Command command = new Command();
+
+    /** SSE流式命令输出配置 */
+    private Stream stream = new Stream();
+
+    /** 批量命令执行配置 */
+    private Batch batch = new Batch();
+
+    /** 会话资源统计配置 */
+    private Accounting accounting = new Accounting();
+
+    @Data
+    public static class Output {
+        /** 单帧最大长度，达到后立即发送 */
+        private int maxFrameSize = 32 * 1024;
+
+        /** 合并等待时间（毫秒），为0时每次读取都立即发送 */
+        private long flushDelayMillis = 5;
+
+        /** 是否允许客户端协商二进制输出子协议 */
+        private boolean binaryProtocolEnabled = true;
+
+        /** 文本帧过滤控制字符时是否保留xterm.js会解释的控制字符（ESC、BEL、退格、SO/SI等） */
+        private boolean keepEscapeSequences = true;
+    }
+
+    @Data
+    public static class Outbound {
+        /** 每个会话发送队列允许积压的最大数据量 */
+        private long maxQueuedBytes = 1024 * 1024;
+
+        /** 队列溢出策略：DROP_OLDEST、PAUSE、DISCONNECT */
+        private TerminalOutboundQueue.OverflowPolicy overflowPolicy = TerminalOutboundQueue.OverflowPolicy.PAUSE;
+    }
+
+    @Data
+    public static class Executor {
+        /** 执行模式：AUTO（JDK 24+为虚拟线程，否则有界线程池）、VIRTUAL、BOUNDED */
+        private TerminalExecutors.Mode mode = TerminalExecutors.Mode.AUTO;
+
+        /** 有界线程池的最大线程数 */
+        private int maxThreads = 256;
+    }
+
+    @Data
+    public static class Ssh {
+        /** SSH主机 */
+        private String host = "localhost";
+
+        /** SSH端口 */
+        private int port = 22;
+
+        /** 每个SSH会话最多复用的shell通道数，需小于sshd的MaxSessions（默认10） */
+        private int maxChannelsPerSession = 8;
+
+        /** 没有通道的会话空闲多久后断开（毫秒） */
+        private long idleTimeoutMillis = 5 * 60 * 1000L;
+
+        /** 健康检查与空闲回收的间隔（毫秒） */
+        private long healthCheckIntervalMillis = 30 * 1000L;
+    }
+
+    @Data
+    public static class Resume {
+        /** 每个终端保留的最近输出字节数，重连时从中补发错过的输出 */
+        private int scrollbackSize = 256 * 1024;
+
+        /** WebSocket断开后终端保留的时间（毫秒），期间可凭恢复令牌重新连接 */
+        private long gracePeriodMillis = 60 * 1000L;
+    }
+
+    @Data
+    public static class Multiplex {
+        /** 一个WebSocket连接上最多同时打开的终端数 */
+        private int maxChannels = 16;
+    }
+
+    @Data
+    public static class Completion {
+        /** 单次补全最多返回的候选数 */
+        private int maxResults = 100;
+
+        /** PATH可执行文件索引的重建间隔（毫秒） */
+        private long pathRefreshMillis = 60 * 1000L;
+
+        /** 目录列表缓存免检查的时间（毫秒），过期后检查目录修改时间决定是否重新列出 */
+        private long directoryCacheTtlMillis = 2000L;
+
+        /** 最多缓存的目录数 */
+        private int maxCachedDirectories = 64;
+    }
+
+    @Data
+    public static class Session {
+        /** 会话空闲超时时间（毫秒） */
+        private long timeoutMillis = 30 * 60 * 1000L;
+
+        /** 全局最大会话数 */
+        private int maxSessions = 200;
+
+        /** 每个用户（未认证时按客户端地址）最大会话数 */
+        private int maxSessionsPerOwner = 20;
+    }
+
+    @Data
+    public static class Pool {
+        /** 是否预先启动shell进程，关闭后每次请求现场启动 */
+        private boolean enabled = true;
+
+        /** 为持久化会话预热的交互式shell数 */
+        private int sessionShells = 2;
+
+        /** 为单次命令预热的shell数 */
+        private int commandShells = 4;
+
+        /** 预热进程空闲的最长存活时间（毫秒），超过后回收替换 */
+        private long maxAgeMillis = 10 * 60 * 1000L;
+    }
+
+    @Data
+    public static class Command {
+        /** 命令执行超时时间（秒） */
+        private int timeoutSeconds = 30;
+
+        /** 非流式响应最多保留的输出字节数，超出部分丢弃并标记为截断 */
+        private long maxOutputBytes = 1024 * 1024;
+    }
+
+    @Data
+    public static class Stream {
+        /** SSE连接默认超时时间（秒），请求未指定时使用 */
+        private long timeoutSeconds = 60;
+
+        /** 请求可指定的最大超时时间（秒） */
+        private long maxTimeoutSeconds = 3600;
+
+        /** 单个输出事件合并的最大字符数，达到后立即发送 */
+        private int maxBatchSize = 16 * 1024;
+
+        /** 输出合并等待时间（毫秒） */
+        private long flushDelayMillis = 50;
+
+        /** 无输出时发送保活注释的间隔（毫秒） */
+        private long keepAliveMillis = 15000;
+    }
+
+    @Data
+    public static class Batch {
+        /** 单个批量请求最多包含的命令数 */
+        private int maxCommands = 500;
+
+        /** 并行执行的最大并发数，命令多为等待IO的shell进程，不按CPU核数限制 */
+        private int maxConcurrency = 8;
+    }
+
+    @Data
+    public static class Accounting {
+        /** 统计各会话进程树资源占用的间隔（毫秒），不大于0时关闭 */
+        private long sampleIntervalMillis = 5000L;
+
+        /** 资源排行接口最多返回的会话数 */
+        private int maxTopSessions = 100;
+    }
+}
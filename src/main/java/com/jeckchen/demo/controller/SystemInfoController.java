@@ -1,18 +1,27 @@
 package com.jeckchen.demo.controller;
 
+import com.jeckchen.demo.dto.ApiResponse;
+import com.jeckchen.demo.dto.HostMetrics;
+import com.jeckchen.demo.dto.SystemMetricsHistory;
+import com.jeckchen.demo.service.HostMetricsCollector;
+import com.jeckchen.demo.service.SystemMetricsBroadcaster;
+import com.jeckchen.demo.service.SystemMetricsHistoryStore;
+import com.jeckchen.demo.service.SystemMetricsSampler;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.lang.management.ManagementFactory;
-import java.lang.management.MemoryMXBean;
-import java.lang.management.MemoryUsage;
-import java.lang.management.OperatingSystemMXBean;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,49 +43,77 @@ public class SystemInfoController {
     @Value("${git.commit.time:unknown}")
     private String gitCommitTime;
 
+    private final SystemMetricsSampler systemMetricsSampler;
+    private final SystemMetricsBroadcaster systemMetricsBroadcaster;
+    private final SystemMetricsHistoryStore systemMetricsHistoryStore;
+    private final HostMetricsCollector hostMetricsCollector;
+
+    public SystemInfoController(SystemMetricsSampler systemMetricsSampler,
+                                SystemMetricsBroadcaster systemMetricsBroadcaster,
+                                SystemMetricsHistoryStore systemMetricsHistoryStore,
+                                HostMetricsCollector hostMetricsCollector) {
+        this.systemMetricsSampler = systemMetricsSampler;
+        this.systemMetricsBroadcaster = systemMetricsBroadcaster;
+        this.systemMetricsHistoryStore = systemMetricsHistoryStore;
+        this.hostMetricsCollector = hostMetricsCollector;
+    }
+
     // 页面跳转方法已移至PageController
 
-    @Operation(summary = "获取系统使用情况")
-    @ResponseBody
+    @Operation(summary = "获取系统使用情况", description = "返回后台定时采样的最近一次快照，支持ETag/Last-Modified条件请求，未变化时返回304")
     @GetMapping("/api/system/usage")
-    public Map<String, Object> getSystemUsage() {
-        Map<String, Object> result = new HashMap<>();
-        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
-        double cpuLoad = -1;
-        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
-            cpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getSystemCpuLoad();
+    public ResponseEntity<byte[]> getSystemUsage(WebRequest webRequest) {
+        SystemMetricsSampler.Sample sample = systemMetricsSampler.getLatest();
+        long sampleTime = sample.getSnapshot().getTimestamp();
+        if (webRequest.checkNotModified(sample.getEtag(), sampleTime)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(sample.getEtag())
+                .lastModified(sampleTime)
+                .body(sample.getJson());
+    }
+    
+    @Operation(summary = "订阅系统使用情况实时推送",
+            description = "SSE事件流：连接后先收到snapshot事件（完整快照），之后每次采样收到delta事件（仅包含有变化的字段）")
+    @GetMapping(value = "/api/system/usage/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSystemUsage() {
+        return systemMetricsBroadcaster.subscribe();
+    }
+    
+    @Operation(summary = "获取主机指标",
+            description = "Linux上为随系统指标采样读取/proc得到的分核CPU、平均负载、内存/交换空间、磁盘与网络速率；其它平台只有JVM提供的整机数据")
+    @GetMapping("/api/system/host")
+    public HostMetrics getHostMetrics() {
+        return hostMetricsCollector.getHostMetrics();
+    }
+    
+    /**
+     * 查询系统指标历史
+     * @param from  起始时间（毫秒时间戳），不传时为结束时间减去range
+     * @param to    结束时间（毫秒时间戳），不传时为当前时间
+     * @param range 未指定起始时间时查询的时长（毫秒），默认1小时
+     * @param step  步长（毫秒），不传时使用数据层级的分辨率
+     */
+    @Operation(summary = "查询系统指标历史",
+            description = "按步长合并为最小/最大/平均值返回；步长会被放大到数据层级分辨率的整数倍，且返回的点数不超过上限")
+    @GetMapping("/api/system/history")
+    public ResponseEntity<ApiResponse<SystemMetricsHistory>> getSystemHistory(
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(defaultValue = "3600000") long range,
+            @RequestParam(defaultValue = "0") long step) {
+        long end = to != null ? to : System.currentTimeMillis();
+        try {
+            long start = from != null ? from : Math.subtractExact(end, range);
+            return ResponseEntity.ok(ApiResponse.success("查询成功", systemMetricsHistoryStore.query(start, end, step)));
+        } catch (ArithmeticException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("时间范围过大"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
-        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
-        MemoryUsage heapMemoryUsage = memoryMXBean.getHeapMemoryUsage();
-        MemoryUsage nonHeapMemoryUsage = memoryMXBean.getNonHeapMemoryUsage();
-        long usedHeapMemory = heapMemoryUsage.getUsed();
-        long maxHeapMemory = heapMemoryUsage.getMax();
-        long usedNonHeapMemory = nonHeapMemoryUsage.getUsed();
-        long maxNonHeapMemory = nonHeapMemoryUsage.getMax();
-        // JVM信息
-        String jvmName = ManagementFactory.getRuntimeMXBean()
-                                          .getVmName();
-        String jvmVersion = ManagementFactory.getRuntimeMXBean()
-                                             .getVmVersion();
-        long startTime = ManagementFactory.getRuntimeMXBean()
-                                          .getStartTime();
-        long uptime = ManagementFactory.getRuntimeMXBean()
-                                       .getUptime();
-        int threadCount = ManagementFactory.getThreadMXBean()
-                                           .getThreadCount();
-        result.put("cpuLoad", cpuLoad);
-        result.put("usedHeapMemory", usedHeapMemory);
-        result.put("maxHeapMemory", maxHeapMemory);
-        result.put("usedNonHeapMemory", usedNonHeapMemory);
-        result.put("maxNonHeapMemory", maxNonHeapMemory);
-        result.put("jvmName", jvmName);
-        result.put("jvmVersion", jvmVersion);
-        result.put("jvmStartTime", startTime);
-        result.put("jvmUptime", uptime);
-        result.put("threadCount", threadCount);
-        // log.info("result: {}", result);
-        System.out.println(result);
-        return result;
     }
     
     @Operation(summary = "获取构建信息")
@@ -1,17 +1,23 @@
 package com.jeckchen.demo.controller;
 
 import com.jeckchen.demo.dto.*;
+import com.jeckchen.demo.service.CommandBatchService;
+import com.jeckchen.demo.service.CommandExecutionRegistry;
+import com.jeckchen.demo.service.CommandExecutionService;
+import com.jeckchen.demo.service.SessionResourceMonitor;
+import com.jeckchen.demo.service.ShellSession;
+import com.jeckchen.demo.service.ShellSessionRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-import java.io.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.UUID;
 
 /**
  * @author JeckChen
@@ -25,43 +31,37 @@ import java.util.UUID;
 @Tag(name = "终端接口", description = "终端命令执行相关操作接口")
 public class TerminalController {
 
-    // 存储持久化的shell会话
-    private static final ConcurrentHashMap<String, ShellSession> sessions = new ConcurrentHashMap<>();
+    private final ShellSessionRegistry shellSessionRegistry;
+    private final CommandExecutionService commandExecutionService;
+    private final CommandExecutionRegistry commandExecutionRegistry;
+    private final CommandBatchService commandBatchService;
+    private final SessionResourceMonitor sessionResourceMonitor;
     
-    // 会话超时时间（30分钟）
-    private static final long SESSION_TIMEOUT = 30 * 60 * 1000L;
-    
-    // 定期清理过期会话
-    static {
-        // 每5分钟清理一次过期会话
-        java.util.concurrent.Executors.newScheduledThreadPool(1).scheduleAtFixedRate(() -> {
-            try {
-                sessions.entrySet().removeIf(entry -> {
-                    ShellSession session = entry.getValue();
-                    if (!session.isAlive() || session.isExpired()) {
-                        session.close();
-                        return true;
-                    }
-                    return false;
-                });
-            } catch (Exception e) {
-                // 忽略清理过程中的错误
-            }
-        }, 5, 5, java.util.concurrent.TimeUnit.MINUTES);
+    public TerminalController(ShellSessionRegistry shellSessionRegistry,
+                              CommandExecutionService commandExecutionService,
+                              CommandExecutionRegistry commandExecutionRegistry,
+                              CommandBatchService commandBatchService,
+                              SessionResourceMonitor sessionResourceMonitor) {
+        this.shellSessionRegistry = shellSessionRegistry;
+        this.commandExecutionService = commandExecutionService;
+        this.commandExecutionRegistry = commandExecutionRegistry;
+        this.commandBatchService = commandBatchService;
+        this.sessionResourceMonitor = sessionResourceMonitor;
     }
 
     /**
      * 执行系统命令（SSE流式输出）
-     * @param request 要执行的命令
+     * 多行输出按大小和时间合并为一个output事件，空闲时发送保活注释
+     * @param request 要执行的命令，可指定超时时间
      * @return SSE流
      */
     @Operation(summary = "执行系统命令（SSE流式输出）")
     @PostMapping("/execute-stream")
     public SseEmitter executeCommandStream(@RequestBody CommandRequest request) {
-        SseEmitter emitter = new SseEmitter(60000L); // 60秒超时
         String command = request.getCommand();
         
         if (command == null || command.trim().isEmpty()) {
+            SseEmitter emitter = new SseEmitter();
             try {
                 emitter.send(SseEmitter.event().name("error").data("命令不能为空"));
                 emitter.complete();
@@ -71,120 +71,97 @@ public class TerminalController {
             return emitter;
         }
         
-        // 异步执行命令
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 根据操作系统选择命令执行方式
-                ProcessBuilder processBuilder;
-                String os = System.getProperty("os.name").toLowerCase();
-                
-                if (os.contains("win")) {
-                    // Windows系统 - 使用PowerShell，设置执行策略和环境
-                    processBuilder = new ProcessBuilder("powershell.exe", "-ExecutionPolicy", "Bypass", "-Command", command);
-                } else {
-                    // Unix/Linux系统
-                    processBuilder = new ProcessBuilder("/bin/bash", "-c", command);
-                }
-                
-                processBuilder.redirectErrorStream(true);
-                // 继承系统环境变量，确保PATH中的命令可以被找到
-                processBuilder.environment().putAll(System.getenv());
-                Process process = processBuilder.start();
-                
-                // 发送开始事件
-                emitter.send(SseEmitter.event().name("start").data("命令开始执行: " + command));
-                
-                // 实时读取输出
-                String encoding = "UTF-8";
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), encoding))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        emitter.send(SseEmitter.event().name("output").data(line));
-                    }
-                }
-                
-                // 等待进程结束
-                int exitCode = process.waitFor();
-                
-                // 发送结束事件
-                Map<String, Object> endData = new HashMap<>();
-                endData.put("exitCode", exitCode);
-                endData.put("success", exitCode == 0);
-                emitter.send(SseEmitter.event().name("end").data(endData));
-                emitter.complete();
-                
-            } catch (Exception e) {
-                try {
-                    emitter.send(SseEmitter.event().name("error").data("执行命令时发生错误: " + e.getMessage()));
-                } catch (Exception ex) {
-                    // 忽略发送错误
-                }
-                emitter.completeWithError(e);
-            }
-        });
-        
-        return emitter;
+        return commandExecutionService.streamEvents(command, request.getTimeoutSeconds());
     }
     
     /**
      * 执行系统命令（传统方式，保持兼容性）
+     * 进程运行期间持续读取输出，超出上限的部分丢弃并标记truncated
      * @param request 要执行的命令
      * @return 执行结果
      */
     @Operation(summary = "执行系统命令")
     @PostMapping("/execute")
     public CommandResponse executeCommand(@RequestBody CommandRequest request) {
+        return commandExecutionService.executeCommand(request.getCommand());
+    }
+    
+    /**
+     * 执行系统命令（流式输出）
+     * 输出以纯文本分块传输，边产生边发送，不受输出上限限制
+     * @param request 要执行的命令
+     * @return 命令输出
+     */
+    @Operation(summary = "执行系统命令（流式输出）")
+    @PostMapping(value = "/execute", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> executeCommandStreaming(@RequestBody CommandRequest request) {
         String command = request.getCommand();
+        MediaType textPlain = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
         
         if (command == null || command.trim().isEmpty()) {
-            return new CommandResponse(false, null, "命令不能为空", null, null);
+            return ResponseEntity.badRequest().contentType(textPlain)
+                    .body(out -> out.write("命令不能为空".getBytes(StandardCharsets.UTF_8)));
         }
         
-        try {
-            long startTime = System.currentTimeMillis();
-            // 根据操作系统选择命令执行方式
-            ProcessBuilder processBuilder;
-            String os = System.getProperty("os.name").toLowerCase();
-            
-            if (os.contains("win")) {
-                // Windows系统 - 使用PowerShell，设置执行策略和环境
-                processBuilder = new ProcessBuilder("powershell.exe", "-ExecutionPolicy", "Bypass", "-Command", command);
-            } else {
-                // Unix/Linux系统
-                processBuilder = new ProcessBuilder("/bin/bash", "-c", command);
-            }
-            
-            processBuilder.redirectErrorStream(true);
-            // 继承系统环境变量，确保PATH中的命令可以被找到
-            processBuilder.environment().putAll(System.getenv());
-            Process process = processBuilder.start();
-            
-            // 设置超时时间为30秒
-            boolean finished = process.waitFor(30, TimeUnit.SECONDS);
-            
-            if (!finished) {
-                process.destroyForcibly();
-                return new CommandResponse(false, null, "命令执行超时（30秒）", null, null);
-            }
-            
-            // 读取输出
-            StringBuilder output = new StringBuilder();
-            String encoding = "UTF-8"; // PowerShell使用UTF-8编码
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), encoding))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
-            
-            int exitCode = process.exitValue();
-            long executionTime = System.currentTimeMillis() - startTime;
-            
-            return new CommandResponse(exitCode == 0, output.toString(), null, exitCode, executionTime);
-            
-        } catch (Exception e) {
-            return new CommandResponse(false, null, "执行命令时发生错误: " + e.getMessage(), null, null);
+        return ResponseEntity.ok().contentType(textPlain)
+                .body(out -> commandExecutionService.stream(command, out));
+    }
+    
+    /**
+     * 批量执行系统命令，全部完成后一次返回
+     * @param request 命令列表及执行方式
+     * @return 各命令的执行结果
+     */
+    @Operation(summary = "批量执行系统命令")
+    @PostMapping("/execute-batch")
+    public BatchCommandResponse executeBatch(@RequestBody BatchCommandRequest request) {
+        return commandBatchService.execute(request);
+    }
+    
+    /**
+     * 批量执行系统命令（SSE流式输出），每条命令完成时推送一个result事件
+     * 连接超时或客户端断开时，未开始的命令不再执行，正在运行的命令被结束
+     * @param request 命令列表及执行方式
+     * @return SSE流
+     */
+    @Operation(summary = "批量执行系统命令（SSE流式输出）")
+    @PostMapping("/execute-batch-stream")
+    public SseEmitter executeBatchStream(@RequestBody BatchCommandRequest request) {
+        return commandBatchService.stream(request);
+    }
+    
+    /**
+     * 获取运行中的单次命令
+     * @return 命令列表
+     */
+    @Operation(summary = "获取运行中的命令列表")
+    @GetMapping("/commands")
+    public ApiResponse<java.util.List<RunningCommandResponse>> getRunningCommands() {
+        java.util.List<RunningCommandResponse> commandList = new java.util.ArrayList<>();
+        for (CommandExecutionRegistry.RunningCommand running : commandExecutionRegistry.getCommands()) {
+            commandList.add(new RunningCommandResponse(
+                running.getId(),
+                running.getCommand(),
+                running.getMode().name(),
+                running.getPid(),
+                running.getStartTime()
+            ));
         }
+        return ApiResponse.success("获取运行中命令成功，共" + commandList.size() + "个命令", commandList);
+    }
+    
+    /**
+     * 取消运行中的命令，结束其整棵进程树
+     * @param commandId 命令ID，SSE方式执行时为start事件的id
+     * @return 操作结果
+     */
+    @Operation(summary = "取消运行中的命令")
+    @DeleteMapping("/commands/{commandId}")
+    public ApiResponse<String> cancelCommand(@PathVariable String commandId) {
+        if (!commandExecutionRegistry.cancel(commandId)) {
+            return ApiResponse.error("命令不存在或已结束: " + commandId);
+        }
+        return ApiResponse.success("命令已取消", commandId);
     }
     
     /**
@@ -231,13 +208,13 @@ public class TerminalController {
      */
     @Operation(summary = "创建终端会话")
     @PostMapping("/session/create")
-    public SessionCreateResponse createSession() {
+    public SessionCreateResponse createSession(HttpServletRequest httpRequest) {
         try {
-            String sessionId = UUID.randomUUID().toString();
-            ShellSession session = new ShellSession(sessionId);
-            sessions.put(sessionId, session);
+            // 已认证时按用户计数，否则按客户端地址
+            String owner = httpRequest.getRemoteUser() != null ? httpRequest.getRemoteUser() : httpRequest.getRemoteAddr();
+            ShellSession session = shellSessionRegistry.create(owner);
             
-            return new SessionCreateResponse(true, sessionId, "Shell会话创建成功", System.currentTimeMillis());
+            return new SessionCreateResponse(true, session.getSessionId(), "Shell会话创建成功", System.currentTimeMillis());
         } catch (Exception e) {
             return new SessionCreateResponse(false, null, "创建会话失败: " + e.getMessage(), System.currentTimeMillis());
         }
@@ -252,12 +229,9 @@ public class TerminalController {
     @Operation(summary = "在指定会话中执行命令")
     @PostMapping("/session/{sessionId}/execute")
     public SessionExecuteResponse executeInSession(@PathVariable String sessionId, @RequestBody SessionExecuteRequest request) {
-        ShellSession session = sessions.get(sessionId);
-        if (session == null || session.isExpired()) {
-            if (session != null && session.isExpired()) {
-                sessions.remove(sessionId);
-            }
-            return new SessionExecuteResponse(false, null, "会话不存在或已过期", sessionId, null, null);
+        ShellSession session = shellSessionRegistry.get(sessionId);
+        if (session == null) {
+            return new SessionExecuteResponse(false, null, "会话不存在或已过期", sessionId, null, null, null);
         }
         
         String command = request.getCommand();
@@ -265,17 +239,17 @@ public class TerminalController {
         Integer timeoutSeconds = request.getTimeoutSeconds() != null ? request.getTimeoutSeconds() : 10;
         
         if (command == null || command.trim().isEmpty()) {
-            return new SessionExecuteResponse(false, null, "命令不能为空", sessionId, command, null);
+            return new SessionExecuteResponse(false, null, "命令不能为空", sessionId, command, null, null);
         }
         
         try {
             long startTime = System.currentTimeMillis();
-            String output = session.executeCommand(command, waitForOutput, timeoutSeconds);
+            ShellSession.ExecuteResult result = session.executeCommand(command, waitForOutput, timeoutSeconds);
             long executionTime = System.currentTimeMillis() - startTime;
             
-            return new SessionExecuteResponse(true, output, null, sessionId, command, executionTime);
+            return new SessionExecuteResponse(true, result.getOutput(), null, sessionId, command, executionTime, result.getExitCode());
         } catch (Exception e) {
-            return new SessionExecuteResponse(false, null, "执行命令失败: " + e.getMessage(), sessionId, command, null);
+            return new SessionExecuteResponse(false, null, "执行命令失败: " + e.getMessage(), sessionId, command, null, null);
         }
     }
     
@@ -287,7 +261,7 @@ public class TerminalController {
     @Operation(summary = "获取会话状态")
     @GetMapping("/session/{sessionId}/status")
     public ApiResponse<SessionStatusResponse> getSessionStatus(@PathVariable String sessionId) {
-        ShellSession session = sessions.get(sessionId);
+        ShellSession session = shellSessionRegistry.get(sessionId);
         if (session == null) {
             return ApiResponse.error("会话不存在: " + sessionId);
         }
@@ -297,7 +271,8 @@ public class TerminalController {
             session.isExpired() ? "EXPIRED" : "ACTIVE",
             session.getCreatedTime(),
             session.getLastAccessTime(),
-            session.getCurrentDirectory()
+            session.getCurrentDirectory(),
+            sessionResourceMonitor.getUsage(sessionId)
         );
         
         return ApiResponse.success("获取会话状态成功", statusResponse);
@@ -311,17 +286,10 @@ public class TerminalController {
     @Operation(summary = "关闭终端会话")
     @DeleteMapping("/session/{sessionId}")
     public ApiResponse<String> closeSession(@PathVariable String sessionId) {
-        ShellSession session = sessions.remove(sessionId);
-        if (session == null) {
+        if (!shellSessionRegistry.close(sessionId)) {
             return ApiResponse.error("会话不存在: " + sessionId);
         }
-        
-        try {
-            session.close();
-            return ApiResponse.success("会话已关闭", sessionId);
-        } catch (Exception e) {
-            return ApiResponse.error("关闭会话失败: " + e.getMessage());
-        }
+        return ApiResponse.success("会话已关闭", sessionId);
     }
     
     /**
@@ -331,18 +299,16 @@ public class TerminalController {
     @Operation(summary = "获取所有会话列表")
     @GetMapping("/sessions")
     public ApiResponse<java.util.List<SessionStatusResponse>> getAllSessions() {
-        // 清理过期会话
-        sessions.entrySet().removeIf(entry -> entry.getValue().isExpired());
-        
+        // 过期和进程退出的会话由注册表按时回收，这里无需再扫描清理
         java.util.List<SessionStatusResponse> sessionList = new java.util.ArrayList<>();
-        for (Map.Entry<String, ShellSession> entry : sessions.entrySet()) {
-            ShellSession session = entry.getValue();
+        for (ShellSession session : shellSessionRegistry.getSessions()) {
             SessionStatusResponse sessionInfo = new SessionStatusResponse(
-                entry.getKey(),
+                session.getSessionId(),
                 session.isAlive() ? "ACTIVE" : "INACTIVE",
                 session.getCreatedTime(),
                 session.getLastAccessTime(),
-                session.getCurrentDirectory()
+                session.getCurrentDirectory(),
+                sessionResourceMonitor.getUsage(session.getSessionId())
             );
             sessionList.add(sessionInfo);
         }
@@ -351,144 +317,35 @@ public class TerminalController {
     }
     
     /**
-     * Shell会话类，维护持久化的shell进程
+     * 按资源占用排列会话，用于找出占用最多的会话
+     * @param sort 排序字段：cpu、memory、io、files
+     * @param limit 返回的会话数
+     * @return 会话资源占用列表
      */
-    private static class ShellSession {
-        private final String sessionId;
-        private final Process process;
-        private final OutputStream outputStream;
-        private final InputStream inputStream;
-        private final InputStream errorStream;
-        private final long createdTime;
-        private volatile long lastAccessTime;
-        private volatile boolean closed = false;
-        
-        public ShellSession(String sessionId) throws IOException {
-            this.sessionId = sessionId;
-            this.createdTime = System.currentTimeMillis();
-            this.lastAccessTime = this.createdTime;
-            
-            // 根据操作系统创建shell进程
-            ProcessBuilder processBuilder;
-            String os = System.getProperty("os.name").toLowerCase();
-            
-            if (os.contains("win")) {
-                // Windows系统 - 使用PowerShell
-                processBuilder = new ProcessBuilder("powershell.exe", "-NoExit", "-Command", "-");
-            } else {
-                // Unix/Linux系统 - 使用bash
-                processBuilder = new ProcessBuilder("/bin/bash", "-i");
-            }
-            
-            processBuilder.redirectErrorStream(false);
-            processBuilder.environment().putAll(System.getenv());
-            
-            this.process = processBuilder.start();
-            this.outputStream = process.getOutputStream();
-            this.inputStream = process.getInputStream();
-            this.errorStream = process.getErrorStream();
-        }
-        
-        public String executeCommand(String command, boolean waitForOutput, int timeoutSeconds) throws IOException, InterruptedException {
-            if (closed || !process.isAlive()) {
-                throw new IOException("Shell会话已关闭或进程已终止");
-            }
-            
-            updateLastAccessTime();
-            
-            // 发送命令到shell
-            outputStream.write((command + "\n").getBytes("UTF-8"));
-            outputStream.flush();
-            
-            if (!waitForOutput) {
-                return "命令已发送，不等待输出";
-            }
-            
-            // 读取输出
-            StringBuilder output = new StringBuilder();
-            StringBuilder errorOutput = new StringBuilder();
-            
-            long startTime = System.currentTimeMillis();
-            long timeoutMillis = timeoutSeconds * 1000L;
-            
-            // 使用非阻塞方式读取输出
-            while (System.currentTimeMillis() - startTime < timeoutMillis) {
-                // 读取标准输出
-                if (inputStream.available() > 0) {
-                    byte[] buffer = new byte[inputStream.available()];
-                    int bytesRead = inputStream.read(buffer);
-                    if (bytesRead > 0) {
-                        String charset = System.getProperty("os.name").toLowerCase().contains("win") ? "UTF-8" : "UTF-8";
-                        output.append(new String(buffer, 0, bytesRead, charset));
-                    }
-                }
-                
-                // 读取错误输出
-                if (errorStream.available() > 0) {
-                    byte[] buffer = new byte[errorStream.available()];
-                    int bytesRead = errorStream.read(buffer);
-                    if (bytesRead > 0) {
-                        String charset = System.getProperty("os.name").toLowerCase().contains("win") ? "UTF-8" : "UTF-8";
-                        errorOutput.append(new String(buffer, 0, bytesRead, charset));
-                    }
-                }
-                
-                // 短暂休眠避免CPU占用过高
-                Thread.sleep(50);
-            }
-            
-            String result = output.toString();
-            if (errorOutput.length() > 0) {
-                result += "\n[STDERR]\n" + errorOutput.toString();
-            }
-            
-            return result;
-        }
-        
-        public boolean isAlive() {
-            return !closed && process.isAlive();
-        }
-        
-        public boolean isExpired() {
-            return System.currentTimeMillis() - lastAccessTime > SESSION_TIMEOUT;
-        }
-        
-        public long getCreatedTime() {
-            return createdTime;
-        }
-        
-        public long getLastAccessTime() {
-            return lastAccessTime;
-        }
-        
-        public String getCurrentDirectory() {
-            try {
-                // 通过执行pwd命令获取当前目录
-                return executeCommand("pwd", true, 5).trim();
-            } catch (Exception e) {
-                return "Unknown";
-            }
-        }
-        
-        private void updateLastAccessTime() {
-            this.lastAccessTime = System.currentTimeMillis();
+    @Operation(summary = "会话资源占用排行",
+            description = "统计范围为会话shell进程及其全部后代进程，按采样间隔更新；包括REST会话，以及本地进程或SSH主机为本机的WebSocket终端")
+    @GetMapping("/resources/top")
+    public ApiResponse<java.util.List<SessionResourceUsage>> getTopSessions(
+            @RequestParam(defaultValue = "cpu") String sort,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ApiResponse.success("获取会话资源排行成功", sessionResourceMonitor.top(limit, sort));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
         }
-        
-        public void close() {
-            if (!closed) {
-                closed = true;
-                try {
-                    if (outputStream != null) outputStream.close();
-                    if (inputStream != null) inputStream.close();
-                    if (errorStream != null) errorStream.close();
-                } catch (IOException e) {
-                    // 忽略关闭流时的错误
-                }
-                
-                if (process != null && process.isAlive()) {
-                    process.destroyForcibly();
-                }
-            }
+    }
+    
+    /**
+     * 强制结束会话的整棵进程树并关闭会话
+     * @param sessionId 资源排行中的会话ID
+     * @return 操作结果
+     */
+    @Operation(summary = "结束会话进程树")
+    @DeleteMapping("/resources/{sessionId}")
+    public ApiResponse<String> killSession(@PathVariable String sessionId) {
+        if (!sessionResourceMonitor.kill(sessionId)) {
+            return ApiResponse.error("会话不存在: " + sessionId);
         }
+        return ApiResponse.success("会话进程树已结束", sessionId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量命令执行请求DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "批量命令执行请求")
+public class BatchCommandRequest {
+    
+    @Schema(description = "要执行的命令列表", required = true)
+    private List<CommandRequest> commands;
+    
+    @Schema(description = "是否并行执行，默认按顺序执行", example = "false")
+    private Boolean parallel;
+    
+    @Schema(description = "并行执行时的最大并发数，不超过服务端上限", example = "4")
+    private Integer maxConcurrency;
+    
+    @Schema(description = "有命令失败时是否跳过尚未开始的命令", example = "false")
+    private Boolean stopOnError;
+    
+    @Schema(description = "流式输出的超时时间（秒），不填时使用默认值", example = "60")
+    private Integer timeoutSeconds;
+}
@@ -0,0 +1,30 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量命令执行响应DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "批量命令执行响应")
+public class BatchCommandResponse {
+    
+    @Schema(description = "是否全部执行成功", example = "true")
+    private Boolean success;
+    
+    @Schema(description = "各命令的执行结果，顺序与请求一致")
+    private List<CommandResponse> results;
+    
+    @Schema(description = "错误信息")
+    private String error;
+    
+    @Schema(description = "总执行时间（毫秒）", example = "1500")
+    private Long executionTime;
+}
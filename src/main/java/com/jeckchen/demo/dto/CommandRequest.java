@@ -16,5 +16,8 @@ public class CommandRequest {
     
     @Schema(description = "要执行的命令", example = "ls -la", required = true)
     private String command;
+    
+    @Schema(description = "流式输出的超时时间（秒），不填时使用默认值", example = "60")
+    private Integer timeoutSeconds;
 
 }
\ No newline at end of file
@@ -28,4 +28,7 @@ public class CommandResponse {
     
     @Schema(description = "执行时间（毫秒）", example = "1500")
     private Long executionTime;
+    
+    @Schema(description = "输出是否超出上限被截断", example = "false")
+    private Boolean truncated;
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 主机指标DTO，速率为相邻两次采样之间的平均值
+ */
+@Getter
+@AllArgsConstructor
+@Schema(description = "主机指标")
+public class HostMetrics {
+
+    @Schema(description = "数据来源：proc为Linux的/proc文件，mxbean为JVM提供的数据（没有分核、磁盘和网络数据）", example = "proc")
+    private final String source;
+
+    @Schema(description = "采样时间（毫秒时间戳）", example = "1760662800000")
+    private final long timestamp;
+
+    @Schema(description = "整机CPU使用率（0~1），无法获取时为-1", example = "0.25")
+    private final double cpuLoad;
+
+    @Schema(description = "各核CPU使用率（0~1），下标为核编号")
+    private final double[] coreLoads;
+
+    @Schema(description = "1分钟、5分钟、15分钟平均负载，无法获取时为-1")
+    private final double[] loadAverage;
+
+    @Schema(description = "物理内存总量（字节）", example = "17179869184")
+    private final long memoryTotal;
+
+    @Schema(description = "可用物理内存（字节），含可回收的缓存", example = "8589934592")
+    private final long memoryAvailable;
+
+    @Schema(description = "交换空间总量（字节）", example = "4294967296")
+    private final long swapTotal;
+
+    @Schema(description = "空闲交换空间（字节）", example = "4294967296")
+    private final long swapFree;
+
+    @Schema(description = "各磁盘的读写速率")
+    private final List<DiskIo> disks;
+
+    @Schema(description = "各网络接口的收发速率，不含回环接口")
+    private final List<NetworkIo> networkInterfaces;
+
+    @Getter
+    @AllArgsConstructor
+    @Schema(description = "磁盘读写速率")
+    public static class DiskIo {
+
+        @Schema(description = "设备名", example = "sda")
+        private final String name;
+
+        @Schema(description = "每秒读取字节数", example = "1048576")
+        private final double readBytesPerSecond;
+
+        @Schema(description = "每秒写入字节数", example = "2097152")
+        private final double writeBytesPerSecond;
+
+        @Schema(description = "每秒完成的读操作数", example = "120")
+        private final double readsPerSecond;
+
+        @Schema(description = "每秒完成的写操作数", example = "80")
+        private final double writesPerSecond;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @Schema(description = "网络接口收发速率")
+    public static class NetworkIo {
+
+        @Schema(description = "接口名", example = "eth0")
+        private final String name;
+
+        @Schema(description = "每秒接收字节数", example = "1048576")
+        private final double receiveBytesPerSecond;
+
+        @Schema(description = "每秒发送字节数", example = "524288")
+        private final double transmitBytesPerSecond;
+
+        @Schema(description = "每秒接收包数", example = "900")
+        private final double receivePacketsPerSecond;
+
+        @Schema(description = "每秒发送包数", example = "700")
+        private final double transmitPacketsPerSecond;
+    }
+}
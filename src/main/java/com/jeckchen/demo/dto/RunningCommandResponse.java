@@ -0,0 +1,31 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 运行中命令响应DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "运行中命令响应")
+public class RunningCommandResponse {
+    
+    @Schema(description = "命令ID", example = "3f2b8c1e-7a4d-4e5f-9b6a-1c2d3e4f5a6b")
+    private String commandId;
+    
+    @Schema(description = "命令内容", example = "ping localhost")
+    private String command;
+    
+    @Schema(description = "执行方式", example = "SSE")
+    private String mode;
+    
+    @Schema(description = "shell进程ID", example = "12345")
+    private Long pid;
+    
+    @Schema(description = "开始时间戳", example = "1641024000000")
+    private Long startTime;
+}
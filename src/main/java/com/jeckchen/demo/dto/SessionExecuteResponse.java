@@ -31,4 +31,7 @@ public class SessionExecuteResponse {
     
     @Schema(description = "执行时间（毫秒）", example = "500")
     private Long executionTime;
+    
+    @Schema(description = "退出码，未等待输出或命令在超时前未结束时为空", example = "0")
+    private Integer exitCode;
 }
\ No newline at end of file
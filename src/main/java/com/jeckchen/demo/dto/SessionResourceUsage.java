@@ -0,0 +1,53 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 会话资源占用DTO，统计范围为会话的shell进程及其全部后代进程，采样后不再修改
+ */
+@Getter
+@AllArgsConstructor
+@Schema(description = "会话资源占用")
+public class SessionResourceUsage {
+
+    @Schema(description = "会话ID；WebSocket终端为terminal-加shell进程号", example = "session-123")
+    private final String sessionId;
+
+    @Schema(description = "会话类型：shell为REST持久化会话，terminal为WebSocket终端（本地进程或本机SSH）", example = "shell")
+    private final String kind;
+
+    @Schema(description = "shell进程号", example = "12345")
+    private final long pid;
+
+    @Schema(description = "进程树中的进程数", example = "3")
+    private final int processCount;
+
+    @Schema(description = "累计CPU时间（毫秒），含已退出并被树内进程回收的子进程", example = "15230")
+    private final long cpuTimeMillis;
+
+    @Schema(description = "最近一个采样周期的CPU占用（核数，1.0表示占满一个核）", example = "0.85")
+    private final double cpuLoad;
+
+    @Schema(description = "常驻内存（字节），无法获取时为-1", example = "52428800")
+    private final long rssBytes;
+
+    @Schema(description = "打开的文件描述符数，无法获取时为-1", example = "24")
+    private final int openFiles;
+
+    @Schema(description = "存活进程累计从存储读取的字节数，无法获取时为-1", example = "1048576")
+    private final long readBytes;
+
+    @Schema(description = "存活进程累计写入存储的字节数，无法获取时为-1", example = "2097152")
+    private final long writeBytes;
+
+    @Schema(description = "最近一个采样周期每秒读取字节数", example = "4096")
+    private final double readBytesPerSecond;
+
+    @Schema(description = "最近一个采样周期每秒写入字节数", example = "8192")
+    private final double writeBytesPerSecond;
+
+    @Schema(description = "采样时间（毫秒时间戳）", example = "1760662800000")
+    private final long sampledAt;
+}
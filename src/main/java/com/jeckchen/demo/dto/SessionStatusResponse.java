@@ -28,4 +28,7 @@ public class SessionStatusResponse {
     
     @Schema(description = "当前工作目录", example = "/home/user")
     private String currentDirectory;
+    
+    @Schema(description = "会话进程树的资源占用，尚未采样时为空")
+    private SessionResourceUsage resources;
 }
\ No newline at end of file
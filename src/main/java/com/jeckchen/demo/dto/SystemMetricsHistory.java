@@ -0,0 +1,59 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 系统指标历史查询结果DTO，各数组按下标与timestamps一一对应
+ */
+@Getter
+@AllArgsConstructor
+@Schema(description = "系统指标历史")
+public class SystemMetricsHistory {
+
+    @Schema(description = "查询起始时间（毫秒时间戳，已按步长对齐）", example = "1760659200000")
+    private final long from;
+
+    @Schema(description = "查询结束时间（毫秒时间戳）", example = "1760662800000")
+    private final long to;
+
+    @Schema(description = "每个数据点覆盖的时长（毫秒），可能大于请求的步长", example = "10000")
+    private final long step;
+
+    @Schema(description = "数据来源层级的分辨率（毫秒）", example = "10000")
+    private final long resolution;
+
+    @Schema(description = "数据点的起始时间，没有数据的时间段不返回")
+    private final long[] timestamps;
+
+    @Schema(description = "系统CPU使用率（0~1）")
+    private final Series cpuLoad;
+
+    @Schema(description = "已用堆内存（字节）")
+    private final Series usedHeapMemory;
+
+    @Schema(description = "已用非堆内存（字节）")
+    private final Series usedNonHeapMemory;
+
+    @Schema(description = "线程数")
+    private final Series threadCount;
+
+    /**
+     * 一个指标在各数据点内的最小值、最大值和平均值，该时间段内没有此指标时为-1
+     */
+    @Getter
+    @AllArgsConstructor
+    @Schema(description = "指标序列")
+    public static class Series {
+
+        @Schema(description = "最小值")
+        private final double[] min;
+
+        @Schema(description = "最大值")
+        private final double[] max;
+
+        @Schema(description = "平均值")
+        private final double[] avg;
+    }
+}
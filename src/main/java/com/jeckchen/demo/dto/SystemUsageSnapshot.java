@@ -0,0 +1,47 @@
+package com.jeckchen.demo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 系统使用情况快照DTO，采样后不再修改
+ */
+@Getter
+@AllArgsConstructor
+@Schema(description = "系统使用情况快照")
+public class SystemUsageSnapshot {
+    
+    @Schema(description = "系统CPU使用率（0~1），无法获取时为-1", example = "0.25")
+    private final double cpuLoad;
+    
+    @Schema(description = "已用堆内存（字节）", example = "134217728")
+    private final long usedHeapMemory;
+    
+    @Schema(description = "最大堆内存（字节）", example = "4294967296")
+    private final long maxHeapMemory;
+    
+    @Schema(description = "已用非堆内存（字节）", example = "67108864")
+    private final long usedNonHeapMemory;
+    
+    @Schema(description = "最大非堆内存（字节），未限制时为-1", example = "-1")
+    private final long maxNonHeapMemory;
+    
+    @Schema(description = "JVM名称", example = "OpenJDK 64-Bit Server VM")
+    private final String jvmName;
+    
+    @Schema(description = "JVM版本", example = "17.0.12+7")
+    private final String jvmVersion;
+    
+    @Schema(description = "JVM启动时间（毫秒时间戳）", example = "1760659200000")
+    private final long jvmStartTime;
+    
+    @Schema(description = "JVM运行时长（毫秒）", example = "3600000")
+    private final long jvmUptime;
+    
+    @Schema(description = "线程数", example = "42")
+    private final int threadCount;
+    
+    @Schema(description = "采样时间（毫秒时间戳）", example = "1760662800000")
+    private final long timestamp;
+}
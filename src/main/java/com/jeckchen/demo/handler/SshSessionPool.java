@@ -0,0 +1,276 @@
+package com.jeckchen.demo.handler;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelShell;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SshSessionPool.java
+ * @description SSH会话池
+ * 按 用户@主机:端口 复用已认证的JSch会话，多个shell通道复用同一条SSH连接，
+ * 只有第一个终端需要完成密钥交换；空闲会话定期做健康检查并在超时后断开
+ * @date 2026年10月17日
+ */
+@Component
+public class SshSessionPool {
+
+    private final JSch jsch = new JSch();
+    private final TerminalProperties.Ssh config;
+    private final TerminalExecutors terminalExecutors;
+    private final Counter handshakeCounter;
+
+    // key: 用户@主机:端口
+    private final Map<String, List<PooledSession>> pool = new ConcurrentHashMap<>();
+
+    public SshSessionPool(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors,
+                          MeterRegistry meterRegistry) {
+        this.config = terminalProperties.getSsh();
+        this.terminalExecutors = terminalExecutors;
+        this.handshakeCounter = Counter.builder("terminal.ssh.handshakes")
+                .description("新建SSH连接（完整握手）的次数")
+                .register(meterRegistry);
+        Gauge.builder("terminal.ssh.sessions", this, SshSessionPool::sessionCount)
+                .description("连接池中的SSH会话数")
+                .register(meterRegistry);
+        Gauge.builder("terminal.ssh.channels", this, SshSessionPool::channelCount)
+                .description("连接池中已打开的shell通道数")
+                .register(meterRegistry);
+
+        long interval = config.getHealthCheckIntervalMillis();
+        terminalExecutors.getScheduler().scheduleWithFixedDelay(this::scheduleMaintenance,
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 打开一个shell通道，优先复用已有的SSH会话
+     * 返回的通道尚未connect，调用方设置好PTY和输入输出流后再连接
+     */
+    public ChannelShell openShell(String username) throws JSchException {
+        String key = username + "@" + config.getHost() + ":" + config.getPort();
+        PooledSession pooled = acquire(key);
+        if (pooled != null) {
+            try {
+                return lease(pooled, (ChannelShell) pooled.session.openChannel("shell"));
+            } catch (JSchException e) {
+                // 复用的会话已失效，移除后新建连接重试
+                release(pooled);
+                remove(key, pooled);
+            }
+        }
+
+        Session session = jsch.getSession(username, config.getHost(), config.getPort());
+        session.setConfig("StrictHostKeyChecking", "no");
+        session.connect();
+        handshakeCounter.increment();
+
+        pooled = new PooledSession(session);
+        pooled.channels.set(1);
+        List<PooledSession> sessions = pool.computeIfAbsent(key, k -> new ArrayList<>());
+        synchronized (sessions) {
+            sessions.add(pooled);
+        }
+        try {
+            return lease(pooled, (ChannelShell) session.openChannel("shell"));
+        } catch (JSchException e) {
+            remove(key, pooled);
+            throw e;
+        }
+    }
+
+    /**
+     * 归还shell通道：断开通道，会话保留在池中供后续终端复用
+     * 同一通道重复归还时只释放一次名额，不会让仍在使用的通道被多算出空位
+     */
+    public void releaseShell(Channel channel) {
+        Session session;
+        try {
+            session = channel.getSession();
+        } catch (JSchException e) {
+            return;
+        } finally {
+            if (channel.isConnected()) {
+                channel.disconnect();
+            }
+        }
+        for (List<PooledSession> sessions : pool.values()) {
+            synchronized (sessions) {
+                for (PooledSession pooled : sessions) {
+                    if (pooled.session == session) {
+                        if (pooled.leased.remove(channel)) {
+                            release(pooled);
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (List<PooledSession> sessions : pool.values()) {
+            synchronized (sessions) {
+                sessions.forEach(pooled -> pooled.session.disconnect());
+                sessions.clear();
+            }
+        }
+        pool.clear();
+    }
+
+    /**
+     * 从池中取一个仍有通道余量的已连接会话，没有则返回null，保活失败待关闭的会话不再借出
+     */
+    private PooledSession acquire(String key) {
+        List<PooledSession> sessions = pool.get(key);
+        if (sessions == null) {
+            return null;
+        }
+        synchronized (sessions) {
+            for (PooledSession pooled : sessions) {
+                if (!pooled.closing && pooled.session.isConnected()
+                        && pooled.channels.get() < config.getMaxChannelsPerSession()) {
+                    pooled.channels.incrementAndGet();
+                    return pooled;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录已借出的通道，归还时据此判断是否重复归还
+     */
+    private static ChannelShell lease(PooledSession pooled, ChannelShell channel) {
+        pooled.leased.add(channel);
+        return channel;
+    }
+
+    /**
+     * 释放一个通道名额，调用方保证每个名额只释放一次
+     */
+    private void release(PooledSession pooled) {
+        pooled.lastReleasedTime = System.currentTimeMillis();
+        pooled.channels.decrementAndGet();
+    }
+
+    private void remove(String key, PooledSession pooled) {
+        List<PooledSession> sessions = pool.get(key);
+        if (sessions != null) {
+            synchronized (sessions) {
+                sessions.remove(pooled);
+            }
+        }
+        pooled.session.disconnect();
+    }
+
+    /**
+     * 健康检查涉及网络IO，从调度线程转交给终端执行器运行
+     */
+    private void scheduleMaintenance() {
+        try {
+            terminalExecutors.getExecutor().execute(this::maintain);
+        } catch (RejectedExecutionException e) {
+            // 线程池繁忙时跳过本轮检查
+        }
+    }
+
+    /**
+     * 断开已失效或空闲超时的会话，并对剩余的空闲会话发送保活消息
+     * 保活失败的会话先标记为待关闭，不再借出；仍空闲时立即断开，
+     * 已被借出的等通道全部归还后在下一轮检查中断开，避免断开刚接入的终端
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (List<PooledSession> sessions : pool.values()) {
+            List<PooledSession> expired = new ArrayList<>();
+            List<PooledSession> idleSessions = new ArrayList<>();
+            synchronized (sessions) {
+                Iterator<PooledSession> iterator = sessions.iterator();
+                while (iterator.hasNext()) {
+                    PooledSession pooled = iterator.next();
+                    boolean idle = pooled.channels.get() == 0;
+                    if (!pooled.session.isConnected() || (idle && pooled.closing)
+                            || (idle && now - pooled.lastReleasedTime > config.getIdleTimeoutMillis())) {
+                        iterator.remove();
+                        expired.add(pooled);
+                    } else if (idle && !pooled.closing) {
+                        idleSessions.add(pooled);
+                    }
+                }
+            }
+            expired.forEach(pooled -> pooled.session.disconnect());
+            for (PooledSession pooled : idleSessions) {
+                try {
+                    pooled.session.sendKeepAliveMsg();
+                } catch (Exception e) {
+                    pooled.closing = true;
+                    boolean removed;
+                    synchronized (sessions) {
+                        removed = pooled.channels.get() == 0 && sessions.remove(pooled);
+                    }
+                    if (removed) {
+                        pooled.session.disconnect();
+                    }
+                }
+            }
+        }
+    }
+
+    private int sessionCount() {
+        int count = 0;
+        for (List<PooledSession> sessions : pool.values()) {
+            synchronized (sessions) {
+                count += sessions.size();
+            }
+        }
+        return count;
+    }
+
+    private int channelCount() {
+        int count = 0;
+        for (List<PooledSession> sessions : pool.values()) {
+            synchronized (sessions) {
+                for (PooledSession pooled : sessions) {
+                    count += pooled.channels.get();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static class PooledSession {
+        private final Session session;
+        // 通道数在会话列表锁内增加，释放时无锁递减
+        private final AtomicInteger channels = new AtomicInteger();
+        // 已借出尚未归还的通道，只有从中移除成功才释放名额
+        private final Set<Channel> leased = ConcurrentHashMap.newKeySet();
+        private volatile long lastReleasedTime = System.currentTimeMillis();
+        // 保活失败，不再借出新通道，全部归还后断开
+        private volatile boolean closing = false;
+
+        PooledSession(Session session) {
+            this.session = session;
+        }
+    }
+}
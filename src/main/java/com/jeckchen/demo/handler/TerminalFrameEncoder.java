@@ -0,0 +1,121 @@
+package com.jeckchen.demo.handler;
+
+import com.jeckchen.demo.util.ControlCharFilter;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalFrameEncoder.java
+ * @description 终端JSON文本帧编码器
+ * 直接把 {"type":..,"data":..} 写入缓冲区，控制字符过滤与JSON转义在同一次扫描中完成，
+ * 每帧只产生最终发送的那一个字符串，不再经过HashMap和ObjectMapper。
+ * 输出帧由调用方传入按连接通道复用的缓冲区（合并器的发送已串行）；终端线程可能是每任务一个的虚拟线程，
+ * 按线程缓存起不到复用作用，其它低频消息每次新建缓冲区
+ * @date 2026年10月17日
+ */
+public class TerminalFrameEncoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // 超过该容量的缓冲区用完后收缩，避免偶发的大帧长期占用连接内存
+    private static final int MAX_RETAINED_CAPACITY = 128 * 1024;
+
+    private final ControlCharFilter filter;
+
+    public TerminalFrameEncoder(ControlCharFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * 编码一帧消息
+     * @param type 消息类型
+     * @param data 消息内容，会先过滤控制字符再转义
+     * @return JSON文本
+     */
+    public String encode(String type, String data) {
+        return encode(type, data, -1);
+    }
+
+    /**
+     * 编码一帧带输出偏移量的消息，offset为负数时不写入该字段
+     * @param offset 该帧末尾在终端输出流中的位置，客户端重连时据此请求补发
+     * @return JSON文本
+     */
+    public String encode(String type, String data, long offset) {
+        return encode(type, data, offset, 0);
+    }
+
+    /**
+     * 编码一帧多路复用的消息，channel为0（默认通道）时不写入该字段，与单终端客户端兼容
+     * @param channel 终端通道号
+     * @return JSON文本
+     */
+    public String encode(String type, String data, long offset, int channel) {
+        return encode(new StringBuilder(data.length() + type.length() + 48), type, data, offset, channel);
+    }
+
+    /**
+     * 使用调用方复用的缓冲区编码一帧消息，同一缓冲区不能被并发使用
+     * @param buffer 复用的缓冲区，原有内容会被清空
+     * @return JSON文本
+     */
+    public String encode(StringBuilder buffer, String type, String data, long offset, int channel) {
+        buffer.setLength(0);
+        buffer.ensureCapacity(data.length() + type.length() + 48);
+        buffer.append("{\"type\":\"");
+        appendEscaped(buffer, type, false);
+        buffer.append("\",\"data\":\"");
+        appendEscaped(buffer, data, true);
+        buffer.append('"');
+        if (offset >= 0) {
+            buffer.append(",\"offset\":").append(offset);
+        }
+        if (channel != 0) {
+            buffer.append(",\"channel\":").append(channel);
+        }
+        buffer.append('}');
+        String frame = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+        return frame;
+    }
+
+    private void appendEscaped(StringBuilder buffer, String value, boolean applyFilter) {
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != 0x7F) {
+                continue;
+            }
+            // 先整段写入前面不需要处理的字符
+            buffer.append(value, start, i);
+            start = i + 1;
+            if (applyFilter && filter.isRemovable(c)) {
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    buffer.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        buffer.append(value, start, length);
+    }
+}
@@ -0,0 +1,299 @@
+package com.jeckchen.demo.handler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalOutboundQueue.java
+ * @description WebSocket会话的有界发送队列
+ * 生产者只负责入队，由单个发送任务异步串行发送，慢客户端不会阻塞终端读取线程；
+ * 队列超过上限时按溢出策略丢弃最旧消息、暂停读取终端或断开连接。
+ * 一个连接复用多个终端时，每个终端通道一条子队列，发送任务在子队列间轮转，每轮各发一条，
+ * 输出量大的终端不会让其它终端的消息排在它的积压之后
+ * @date 2026年10月17日
+ */
+public class TerminalOutboundQueue {
+
+    /**
+     * 发送队列溢出策略
+     */
+    public enum OverflowPolicy {
+        /** 丢弃最旧的消息 */
+        DROP_OLDEST,
+        /** 暂停读取终端输出，直到队列降到上限以下 */
+        PAUSE,
+        /** 断开WebSocket连接 */
+        DISCONNECT
+    }
+
+    private final WebSocketSession session;
+    private final long maxQueuedBytes;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor sendExecutor;
+    private final Meters meters;
+
+    // 通道号到子队列，只保留非空的子队列；ready为轮转顺序
+    private final Map<Integer, Lane> lanes = new HashMap<>();
+    private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean draining;
+    private boolean closed;
+
+    public TerminalOutboundQueue(WebSocketSession session, long maxQueuedBytes, OverflowPolicy overflowPolicy,
+                                 Executor sendExecutor, Meters meters) {
+        this.session = session;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.overflowPolicy = overflowPolicy;
+        this.sendExecutor = sendExecutor;
+        this.meters = meters;
+    }
+
+    /**
+     * 消息入队，不阻塞调用线程
+     * @param message 待发送的消息
+     * @param size 消息大小，用于队列容量统计
+     */
+    public void enqueue(WebSocketMessage<?> message, int size) {
+        enqueue(0, message, size);
+    }
+
+    /**
+     * 消息进入指定通道的子队列，不阻塞调用线程
+     * @param channel 终端通道号
+     */
+    public void enqueue(int channel, WebSocketMessage<?> message, int size) {
+        boolean startDrain;
+        boolean disconnect = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (queuedBytes + size > maxQueuedBytes && !ready.isEmpty()) {
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    // 先丢弃本通道的积压，不够再从积压最多的通道丢弃
+                    Lane victim = lanes.get(channel);
+                    while (queuedBytes + size > maxQueuedBytes && !ready.isEmpty()) {
+                        if (victim == null || victim.messages.isEmpty()) {
+                            victim = largestLane();
+                        }
+                        PendingMessage dropped = victim.poll();
+                        removeIfEmpty(victim);
+                        queuedBytes -= dropped.size;
+                        meters.queuedBytes.addAndGet(-dropped.size);
+                        meters.dropped.increment();
+                    }
+                } else if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    disconnect = true;
+                }
+                // PAUSE策略照常入队，由读取线程在awaitCapacity中等待
+            }
+            if (!disconnect) {
+                Lane lane = lanes.get(channel);
+                if (lane == null) {
+                    lane = new Lane(channel);
+                    lanes.put(channel, lane);
+                    ready.addLast(lane);
+                }
+                lane.add(new PendingMessage(message, size, System.nanoTime()));
+                queuedBytes += size;
+                meters.queuedBytes.addAndGet(size);
+            }
+            startDrain = !disconnect && !draining;
+            if (startDrain) {
+                draining = true;
+            }
+        }
+        if (disconnect) {
+            meters.dropped.increment();
+            try {
+                sendExecutor.execute(this::disconnect);
+            } catch (RejectedExecutionException e) {
+                disconnect();
+            }
+        } else if (startDrain) {
+            try {
+                sendExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 线程池已满时退化为在当前线程发送
+                drain();
+            }
+        }
+    }
+
+    /**
+     * PAUSE策略下阻塞读取线程，直到队列降到上限以下；其它策略立即返回
+     */
+    public void awaitCapacity() throws InterruptedException {
+        awaitCapacity(0);
+    }
+
+    /**
+     * PAUSE策略下，队列超过上限且本通道的积压不少于平均份额时阻塞该通道的读取线程，
+     * 积压少的通道不会因为其它通道输出过多而被暂停
+     */
+    public synchronized void awaitCapacity(int channel) throws InterruptedException {
+        if (overflowPolicy != OverflowPolicy.PAUSE) {
+            return;
+        }
+        while (!closed && queuedBytes > maxQueuedBytes) {
+            Lane lane = lanes.get(channel);
+            if (lane == null || lane.bytes < maxQueuedBytes / lanes.size()) {
+                return;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * 关闭队列并丢弃未发送的消息
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        meters.queuedBytes.addAndGet(-queuedBytes);
+        queuedBytes = 0;
+        lanes.clear();
+        ready.clear();
+        notifyAll();
+    }
+
+    /**
+     * 串行发送队列中的消息，同一时刻每个会话最多只有一个发送任务
+     * 每次从轮转队首的通道取一条，该通道仍有消息时排到队尾
+     */
+    private void drain() {
+        while (true) {
+            PendingMessage pending;
+            synchronized (this) {
+                Lane lane = ready.pollFirst();
+                if (lane == null || closed) {
+                    draining = false;
+                    return;
+                }
+                pending = lane.poll();
+                if (lane.messages.isEmpty()) {
+                    lanes.remove(lane.channel);
+                } else {
+                    ready.addLast(lane);
+                }
+            }
+            try {
+                if (session.isOpen()) {
+                    session.sendMessage(pending.message);
+                }
+            } catch (Exception e) {
+                System.err.println("发送WebSocket消息失败: " + e.getMessage());
+            } finally {
+                meters.sendLatency.record(System.nanoTime() - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    if (!closed) {
+                        queuedBytes -= pending.size;
+                        meters.queuedBytes.addAndGet(-pending.size);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private Lane largestLane() {
+        Lane largest = null;
+        for (Lane lane : ready) {
+            if (largest == null || lane.bytes > largest.bytes) {
+                largest = lane;
+            }
+        }
+        return largest;
+    }
+
+    private void removeIfEmpty(Lane lane) {
+        if (lane.messages.isEmpty()) {
+            lanes.remove(lane.channel);
+            ready.remove(lane);
+        }
+    }
+
+    private void disconnect() {
+        close();
+        try {
+            System.err.println("WebSocket发送队列溢出，断开连接: " + session.getId());
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            System.err.println("关闭WebSocket连接失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一个终端通道的子队列
+     */
+    private static class Lane {
+        private final int channel;
+        private final ArrayDeque<PendingMessage> messages = new ArrayDeque<>();
+        private long bytes;
+
+        Lane(int channel) {
+            this.channel = channel;
+        }
+
+        void add(PendingMessage message) {
+            messages.addLast(message);
+            bytes += message.size;
+        }
+
+        PendingMessage poll() {
+            PendingMessage message = messages.pollFirst();
+            bytes -= message.size;
+            return message;
+        }
+    }
+
+    private static class PendingMessage {
+        private final WebSocketMessage<?> message;
+        private final int size;
+        private final long enqueuedAt;
+
+        PendingMessage(WebSocketMessage<?> message, int size, long enqueuedAt) {
+            this.message = message;
+            this.size = size;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * 所有会话共享的发送队列指标
+     */
+    public static class Meters {
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private final Counter dropped;
+        private final Timer sendLatency;
+
+        public Meters(MeterRegistry meterRegistry) {
+            Gauge.builder("terminal.outbound.queued.bytes", queuedBytes, AtomicLong::get)
+                    .description("所有WebSocket发送队列中待发送的数据量")
+                    .register(meterRegistry);
+            this.dropped = Counter.builder("terminal.outbound.dropped")
+                    .description("因发送队列溢出而丢弃的消息数")
+                    .register(meterRegistry);
+            this.sendLatency = Timer.builder("terminal.outbound.send.latency")
+                    .description("消息从入队到发送完成的耗时")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.jeckchen.demo.handler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalOutputAggregator.java
+ * @description 终端输出合并器，将连续的输出块合并为一帧发送
+ * 文本模式合并字符串；二进制模式直接合并原始字节，并在帧首预留一个字节的类型头
+ * @date 2026年10月17日
+ */
+public class TerminalOutputAggregator {
+
+    private final int maxFrameSize;
+    private final long flushDelayMillis;
+    private final ScheduledExecutorService scheduler;
+    // 定时发送改在此线程池中执行，避免阻塞式的发送占用调度线程；为null时直接在调度线程发送
+    private final Executor flushExecutor;
+
+    // 文本模式
+    private final StringBuilder textBuffer;
+    private final Consumer<String> textSink;
+
+    // 二进制模式：binaryBuffer开头固定为帧头，headerLength为帧头长度
+    private byte[] binaryBuffer;
+    private int binaryLength;
+    private final int headerLength;
+    private final Consumer<byte[]> binarySink;
+
+    private ScheduledFuture<?> pendingFlush;
+
+    // 已合并内容末尾在输出流中的位置，由调用方追加时给出，供发送回调标记帧的偏移量
+    private long endOffset;
+
+    private TerminalOutputAggregator(int maxFrameSize, long flushDelayMillis, ScheduledExecutorService scheduler,
+                                     Executor flushExecutor, Consumer<String> textSink, byte[] frameHeader,
+                                     Consumer<byte[]> binarySink) {
+        this.maxFrameSize = maxFrameSize;
+        this.flushDelayMillis = flushDelayMillis;
+        this.scheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+        this.textSink = textSink;
+        this.binarySink = binarySink;
+        int initialCapacity = Math.min(maxFrameSize, 8 * 1024);
+        if (binarySink != null) {
+            this.textBuffer = null;
+            this.headerLength = frameHeader.length;
+            this.binaryBuffer = Arrays.copyOf(frameHeader, initialCapacity + headerLength);
+            this.binaryLength = headerLength;
+        } else {
+            this.headerLength = 0;
+            this.textBuffer = new StringBuilder(initialCapacity);
+        }
+    }
+
+    /**
+     * 创建文本模式合并器
+     */
+    public static TerminalOutputAggregator text(int maxFrameSize, long flushDelayMillis,
+                                                ScheduledExecutorService scheduler, Consumer<String> frameSink) {
+        return new TerminalOutputAggregator(maxFrameSize, flushDelayMillis, scheduler, null, frameSink, null, null);
+    }
+
+    /**
+     * 创建文本模式合并器，发送可能阻塞时使用：定时发送在flushExecutor中执行
+     */
+    public static TerminalOutputAggregator text(int maxFrameSize, long flushDelayMillis,
+                                                ScheduledExecutorService scheduler, Executor flushExecutor,
+                                                Consumer<String> frameSink) {
+        return new TerminalOutputAggregator(maxFrameSize, flushDelayMillis, scheduler, flushExecutor, frameSink,
+                null, null);
+    }
+
+    /**
+     * 创建二进制模式合并器，发送的帧以frameHeader开头
+     */
+    public static TerminalOutputAggregator binary(int maxFrameSize, long flushDelayMillis,
+                                                  ScheduledExecutorService scheduler, byte frameHeader,
+                                                  Consumer<byte[]> frameSink) {
+        return binary(maxFrameSize, flushDelayMillis, scheduler, new byte[]{frameHeader}, frameSink);
+    }
+
+    /**
+     * 创建二进制模式合并器，发送的帧以多字节帧头开头，例如帧类型加通道号
+     */
+    public static TerminalOutputAggregator binary(int maxFrameSize, long flushDelayMillis,
+                                                  ScheduledExecutorService scheduler, byte[] frameHeader,
+                                                  Consumer<byte[]> frameSink) {
+        return new TerminalOutputAggregator(maxFrameSize, flushDelayMillis, scheduler, null, null,
+                frameHeader.clone(), frameSink);
+    }
+
+    public boolean isBinary() {
+        return binarySink != null;
+    }
+
+    /**
+     * 追加一段文本输出，内容会被立即复制，调用方可继续复用传入的缓冲区
+     */
+    public synchronized void append(CharSequence chunk) {
+        textBuffer.append(chunk);
+        afterAppend(textBuffer.length());
+    }
+
+    /**
+     * 追加一段文本输出，并记录这段输出末尾在输出流中的位置
+     * 记录与追加在同一把锁内完成，发送回调中读取 {@link #getEndOffset()} 得到的即是本帧末尾位置
+     */
+    public synchronized void append(CharSequence chunk, long endOffset) {
+        this.endOffset = endOffset;
+        append(chunk);
+    }
+
+    /**
+     * 最近一次追加的输出末尾位置，在发送回调中调用时即为当前帧的末尾位置
+     */
+    public synchronized long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * 追加一段原始字节输出
+     */
+    public synchronized void append(byte[] bytes, int offset, int length) {
+        int required = binaryLength + length;
+        if (required > binaryBuffer.length) {
+            binaryBuffer = Arrays.copyOf(binaryBuffer, Math.max(required, binaryBuffer.length * 2));
+        }
+        System.arraycopy(bytes, offset, binaryBuffer, binaryLength, length);
+        binaryLength = required;
+        afterAppend(binaryLength - headerLength);
+    }
+
+    /**
+     * 追加ByteBuffer中剩余的字节，不改变其position
+     */
+    public void append(ByteBuffer bytes) {
+        append(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    }
+
+    /**
+     * 超过帧大小上限立即发送，否则在合并等待时间到期后发送
+     */
+    private void afterAppend(int pendingSize) {
+        if (pendingSize >= maxFrameSize || flushDelayMillis <= 0) {
+            flush();
+        } else if (pendingFlush == null) {
+            pendingFlush = scheduler.schedule(flushExecutor == null ? this::flush : this::flushAsync,
+                    flushDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushAsync() {
+        try {
+            flushExecutor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    /**
+     * 立即发送已缓存的输出
+     * 发送在锁内完成，保证帧的顺序与读取顺序一致
+     */
+    public synchronized void flush() {
+        cancelPendingFlush();
+        if (binarySink != null) {
+            if (binaryLength <= headerLength) {
+                return;
+            }
+            // 帧可能进入发送队列，必须拷贝一份，缓冲区留给下一帧复用
+            byte[] frame = Arrays.copyOf(binaryBuffer, binaryLength);
+            binaryLength = headerLength;
+            binarySink.accept(frame);
+        } else {
+            if (textBuffer.length() == 0) {
+                return;
+            }
+            String frame = textBuffer.toString();
+            textBuffer.setLength(0);
+            textSink.accept(frame);
+        }
+    }
+
+    /**
+     * 丢弃未发送的输出并取消定时任务
+     */
+    public synchronized void close() {
+        cancelPendingFlush();
+        if (binarySink != null) {
+            binaryLength = headerLength;
+        } else {
+            textBuffer.setLength(0);
+        }
+    }
+
+    private void cancelPendingFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+    }
+}
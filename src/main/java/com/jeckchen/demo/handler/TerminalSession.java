@@ -0,0 +1,409 @@
+package com.jeckchen.demo.handler;
+
+import com.jeckchen.demo.util.ByteRingBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalSession.java
+ * @description 终端会话，与WebSocket连接解耦
+ * 输出泵把终端输出统一转为UTF-8，先写入回滚缓冲区再转发给当前连接。
+ * 连接断开后终端继续运行，宽限期内客户端凭恢复令牌重新连接，
+ * 从上次收到的输出位置开始补发；超过宽限期无人连接才关闭终端。
+ * shell通过OSC 7转义序列报告工作目录时记录下来，供Tab补全使用；
+ * 本机SSH终端的shell进程号通过私有OSC序列报告一次，供资源统计使用
+ * @date 2026年10月17日
+ */
+public class TerminalSession {
+
+    /** 报告shell进程号的私有OSC编号，格式为 ESC ] 7770 ; 随机串 ; 进程号 BEL，xterm.js会忽略未知的OSC */
+    public static final String SHELL_PID_OSC = "7770";
+
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int REPLAY_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * 终端输出的接收方，由WebSocket连接实现
+     * attached和write在会话锁内调用，保证补发与实时输出不会交错；
+     * awaitCapacity在锁外调用，terminated在终端已标记关闭、连接已解除后于锁外调用
+     */
+    public interface OutputSink {
+
+        /**
+         * 连接成功后、补发输出之前调用
+         * @param startOffset 随后第一段输出在输出流中的起始位置
+         */
+        void attached(String token, long startOffset);
+
+        /**
+         * 转发一段UTF-8输出
+         * @param endOffset 该段输出末尾在输出流中的位置
+         */
+        void write(byte[] bytes, int offset, int length, long endOffset);
+
+        /**
+         * 终端退出，发送剩余输出；error为null表示正常退出
+         */
+        void terminated(String error);
+
+        /**
+         * 发送队列积压时阻塞输出泵，让背压传递到终端进程
+         */
+        void awaitCapacity() throws InterruptedException;
+    }
+
+    private final String token;
+    private final Object channel;
+    private final OutputStream input;
+    private final ByteRingBuffer scrollback;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final Runnable releaser;
+    private final Object lock = new Object();
+    private final AtomicInteger activePumps = new AtomicInteger();
+    private OutputSink sink;
+    private ScheduledFuture<?> graceTimer;
+    private volatile boolean closed = false;
+    private volatile String workingDirectory;
+    // shell在本机上的进程号，未知时为-1
+    private volatile long shellPid = -1;
+    // 等待中的进程号报告前缀和回调，收到一次后清空
+    private volatile byte[] shellPidPrefix;
+    private volatile LongConsumer shellPidListener;
+
+    /**
+     * @param channel  SSH通道或本地进程通道，供调整终端大小等操作使用
+     * @param input    终端的输入流
+     * @param releaser 关闭终端时释放通道
+     */
+    public TerminalSession(String token, Object channel, OutputStream input, int scrollbackSize,
+                           ScheduledExecutorService scheduler, Executor executor, Runnable releaser) {
+        this.token = token;
+        this.channel = channel;
+        this.input = input;
+        this.scrollback = new ByteRingBuffer(scrollbackSize);
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.releaser = releaser;
+    }
+
+    /**
+     * 启动输出泵；标准输出结束即视为终端退出
+     * @param errorStream 本地进程的错误输出，SSH通道为null
+     * @throws RejectedExecutionException 线程池已满
+     */
+    public void start(InputStream outputStream, InputStream errorStream, Charset charset) {
+        // UTF-8单输出流直接写入原始字节；其它情况先按流解码再转为UTF-8，两条流交错也不会拆散多字节字符
+        boolean passthrough = errorStream == null && StandardCharsets.UTF_8.equals(charset);
+        activePumps.set(errorStream == null ? 1 : 2);
+        executor.execute(() -> pump(outputStream, charset, passthrough, "读取终端输出时发生错误: "));
+        if (errorStream != null) {
+            try {
+                executor.execute(() -> pump(errorStream, charset, false, "读取终端错误输出时发生错误: "));
+            } catch (RejectedExecutionException e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 连接到终端：补发offset之后仍在回滚缓冲区中的输出，之后的输出实时转发
+     * 终端已有连接时由新连接接管
+     * @param offset 客户端已收到的输出位置，新连接为0
+     * @return 被接管的旧连接，没有时为null
+     * @throws IllegalStateException 终端已关闭
+     */
+    public OutputSink attach(OutputSink newSink, long offset) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("终端已关闭");
+            }
+            if (graceTimer != null) {
+                graceTimer.cancel(false);
+                graceTimer = null;
+            }
+            OutputSink previous = sink;
+            sink = null;
+            replay(newSink, offset);
+            sink = newSink;
+            return previous;
+        }
+    }
+
+    /**
+     * 连接断开：终端继续运行，宽限期内无人重新连接则关闭
+     */
+    public void detach(OutputSink oldSink, long gracePeriodMillis) {
+        synchronized (lock) {
+            if (sink != oldSink || closed) {
+                return;
+            }
+            sink = null;
+            try {
+                // 关闭通道可能涉及网络交互，从调度线程转到线程池执行
+                graceTimer = scheduler.schedule(() -> executor.execute(this::close),
+                        gracePeriodMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * 向终端写入输入
+     */
+    public void write(byte[] data) throws IOException {
+        if (closed) {
+            throw new IOException("终端已关闭");
+        }
+        input.write(data);
+        input.flush();
+    }
+
+    /**
+     * 等待shell以 {@link #SHELL_PID_OSC} 序列报告进程号，只接受带nonce的第一次报告，须在start之前调用
+     * @param listener 在输出泵线程中调用
+     */
+    public void expectShellPid(String nonce, LongConsumer listener) {
+        shellPidListener = listener;
+        shellPidPrefix = ("\u001B]" + SHELL_PID_OSC + ";" + nonce + ";").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 关闭终端并释放通道，可重复调用
+     */
+    public void close() {
+        terminate(null);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Object getChannel() {
+        return channel;
+    }
+
+    /**
+     * shell在本机上的进程号：本地进程终端，或已报告并核实进程号的本机SSH终端；未知时为-1
+     */
+    public long getShellPid() {
+        return shellPid;
+    }
+
+    public void setShellPid(long shellPid) {
+        this.shellPid = shellPid;
+    }
+
+    /**
+     * shell最近一次通过OSC 7报告的工作目录，未报告过时为null
+     */
+    public String getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * 从回滚缓冲区补发，offset已被覆盖时从最早仍保留的字符开始
+     */
+    private void replay(OutputSink target, long offset) {
+        long end = scrollback.position();
+        long start = Math.min(Math.max(offset, scrollback.oldestPosition()), end);
+        byte[] chunk = new byte[REPLAY_CHUNK_SIZE];
+        if (start > offset) {
+            // 被覆盖处可能截断了多字节字符，跳过开头的UTF-8后续字节
+            while (start < end && scrollback.read(start, chunk, 0, 1) == 1 && (chunk[0] & 0xC0) == 0x80) {
+                start++;
+            }
+        }
+        target.attached(token, start);
+        long position = start;
+        while (position < end) {
+            int length = scrollback.read(position, chunk, 0, (int) Math.min(chunk.length, end - position));
+            if (length <= 0) {
+                break;
+            }
+            position += length;
+            target.write(chunk, 0, length, position);
+        }
+    }
+
+    /**
+     * 输出泵：阻塞读取终端输出，写入回滚缓冲区后转发给当前连接
+     */
+    private void pump(InputStream in, Charset charset, boolean passthrough, String errorPrefix) {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        // 每条流独立的增量解码器，跨读取边界的多字节字符留到下一次读取再解码
+        TerminalStreamDecoder decoder = passthrough ? null : new TerminalStreamDecoder(charset, buffer.length);
+        String error = null;
+        try {
+            int bytesRead;
+            while (true) {
+                OutputSink current;
+                synchronized (lock) {
+                    current = sink;
+                }
+                // 无人连接时照常读取，输出只进入回滚缓冲区
+                if (current != null) {
+                    current.awaitCapacity();
+                }
+                if ((bytesRead = in.read(buffer)) == -1) {
+                    break;
+                }
+                if (bytesRead == 0) {
+                    continue;
+                }
+                if (passthrough) {
+                    publish(buffer, 0, bytesRead);
+                } else {
+                    publish(decoder.transcodeToUtf8(buffer, 0, bytesRead));
+                }
+            }
+            // 流结束时把残留字节转发出去
+            if (decoder != null) {
+                CharBuffer rest = decoder.finish();
+                if (rest.hasRemaining()) {
+                    publish(decoder.encodeUtf8(rest));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 终端主动关闭时流会被关闭，此时的异常属于正常退出
+            if (!closed) {
+                error = errorPrefix + e.getMessage();
+            }
+        }
+        if (activePumps.decrementAndGet() == 0 || error != null) {
+            terminate(error);
+        }
+    }
+
+    private void publish(ByteBuffer utf8) {
+        publish(utf8.array(), utf8.arrayOffset() + utf8.position(), utf8.remaining());
+    }
+
+    private void publish(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        trackWorkingDirectory(bytes, offset, length);
+        if (shellPidPrefix != null) {
+            trackShellPid(bytes, offset, length);
+        }
+        synchronized (lock) {
+            scrollback.write(bytes, offset, length);
+            if (sink != null) {
+                sink.write(bytes, offset, length, scrollback.position());
+            }
+        }
+    }
+
+    /**
+     * 识别 ESC ] 7 ; file://host/path BEL 形式的工作目录报告，只查找ESC字节，不解析其它转义序列
+     * 跨两次读取的序列不识别，下一次提示符会再次报告
+     */
+    private void trackWorkingDirectory(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end - 3; i++) {
+            if (bytes[i] != 0x1B || bytes[i + 1] != ']' || bytes[i + 2] != '7' || bytes[i + 3] != ';') {
+                continue;
+            }
+            int start = i + 4;
+            int j = start;
+            while (j < end && bytes[j] != 0x07 && bytes[j] != 0x1B) {
+                j++;
+            }
+            if (j == end) {
+                return;
+            }
+            try {
+                String path = URI.create(new String(bytes, start, j - start, StandardCharsets.UTF_8)).getPath();
+                if (path != null && !path.isEmpty()) {
+                    workingDirectory = path;
+                }
+            } catch (IllegalArgumentException e) {
+                // 格式不正确的报告直接忽略
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * 识别shell进程号报告，与工作目录报告一样不识别跨两次读取的序列
+     */
+    private void trackShellPid(byte[] bytes, int offset, int length) {
+        byte[] prefix = shellPidPrefix;
+        int end = offset + length;
+        outer:
+        for (int i = offset; i <= end - prefix.length; i++) {
+            for (int k = 0; k < prefix.length; k++) {
+                if (bytes[i + k] != prefix[k]) {
+                    continue outer;
+                }
+            }
+            int start = i + prefix.length;
+            int j = start;
+            long pid = 0;
+            while (j < end && bytes[j] >= '0' && bytes[j] <= '9' && j - start < 18) {
+                pid = pid * 10 + (bytes[j] - '0');
+                j++;
+            }
+            if (j == start || j == end || bytes[j] != 0x07) {
+                return;
+            }
+            LongConsumer listener = shellPidListener;
+            shellPidPrefix = null;
+            shellPidListener = null;
+            if (listener != null) {
+                listener.accept(pid);
+            }
+            return;
+        }
+    }
+
+    private void terminate(String error) {
+        OutputSink current;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (graceTimer != null) {
+                graceTimer.cancel(false);
+                graceTimer = null;
+            }
+            current = sink;
+            sink = null;
+        }
+        if (current != null) {
+            current.terminated(error);
+        }
+        try {
+            releaser.run();
+        } catch (Exception e) {
+            System.err.println("关闭终端时发生错误: " + e.getMessage());
+        }
+        scrollback.close();
+    }
+}
@@ -0,0 +1,126 @@
+package com.jeckchen.demo.handler;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalStreamDecoder.java
+ * @description 终端输出流的增量解码器，每条输出流一个实例，非线程安全
+ * 被读取边界截断的多字节字符会保留到下一次读取再解码，不会出现乱码；
+ * 输入、输出缓冲区在整个流的生命周期内复用
+ * @date 2026年10月17日
+ */
+public class TerminalStreamDecoder {
+
+    private final CharsetDecoder decoder;
+    private ByteBuffer input;
+    private CharBuffer output;
+
+    // 二进制协议下转码为UTF-8时使用
+    private CharsetEncoder utf8Encoder;
+    private ByteBuffer utf8Output;
+
+    public TerminalStreamDecoder(Charset charset, int bufferSize) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // 额外预留空间存放上一次残留的不完整字符
+        this.input = ByteBuffer.allocate(bufferSize + 16);
+        this.output = CharBuffer.allocate((int) Math.ceil(input.capacity() * (double) decoder.maxCharsPerByte()));
+    }
+
+    /**
+     * 解码一段字节，不完整的尾部字节留待下一次调用
+     * @return 解码出的完整字符，缓冲区在下一次调用前有效
+     */
+    public CharBuffer decode(byte[] bytes, int offset, int length) {
+        ensureInputCapacity(length);
+        input.put(bytes, offset, length);
+        input.flip();
+        output.clear();
+        while (decoder.decode(input, output, false) == CoderResult.OVERFLOW) {
+            growOutput();
+        }
+        input.compact();
+        output.flip();
+        return output;
+    }
+
+    /**
+     * 流结束时调用，输出残留的不完整字节（以替换字符表示）并重置解码器
+     */
+    public CharBuffer finish() {
+        input.flip();
+        output.clear();
+        while (decoder.decode(input, output, true) == CoderResult.OVERFLOW) {
+            growOutput();
+        }
+        while (decoder.flush(output) == CoderResult.OVERFLOW) {
+            growOutput();
+        }
+        input.clear();
+        decoder.reset();
+        output.flip();
+        return output;
+    }
+
+    /**
+     * 解码后重新编码为UTF-8，结果只包含完整字符，可直接交给xterm.js
+     * @return UTF-8字节，缓冲区在下一次调用前有效
+     */
+    public ByteBuffer transcodeToUtf8(byte[] bytes, int offset, int length) {
+        return encodeUtf8(decode(bytes, offset, length));
+    }
+
+    /**
+     * 以UTF-8编码字符，缓冲区在下一次调用前有效
+     */
+    public ByteBuffer encodeUtf8(CharBuffer chars) {
+        if (utf8Encoder == null) {
+            utf8Encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            utf8Output = ByteBuffer.allocate(output.capacity() * 3);
+        }
+        utf8Output.clear();
+        if (utf8Output.capacity() < chars.remaining() * 3) {
+            utf8Output = ByteBuffer.allocate(chars.remaining() * 3);
+        }
+        utf8Encoder.reset();
+        utf8Encoder.encode(chars, utf8Output, true);
+        utf8Encoder.flush(utf8Output);
+        utf8Output.flip();
+        return utf8Output;
+    }
+
+    /**
+     * 当前残留、尚未解码的字节数
+     */
+    public int pendingBytes() {
+        return input.position();
+    }
+
+    private void ensureInputCapacity(int length) {
+        if (input.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(input.position() + length + 16);
+            input.flip();
+            larger.put(input);
+            input = larger;
+        }
+    }
+
+    private void growOutput() {
+        CharBuffer larger = CharBuffer.allocate(output.capacity() * 2);
+        output.flip();
+        larger.put(output);
+        output = larger;
+    }
+}
@@ -3,39 +3,127 @@ package com.jeckchen.demo.handler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jcraft.jsch.*;
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import com.jeckchen.demo.service.SessionResourceMonitor;
+import com.jeckchen.demo.service.TabCompletionService;
+import com.jeckchen.demo.util.ControlCharFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author JeckChen
  * @version 1.0.0
  * @className TerminalWebSocketHandler.java
  * @description 终端WebSocket处理器
+ * 终端由 {@link TerminalSession} 持有，WebSocket连接只是挂在终端上的输出接收方：
+ * 连接断开后终端在宽限期内保留，客户端凭session_token消息下发的恢复令牌重新连接，
+ * 只补发断开期间错过的输出。
+ * 一个连接可通过消息中的channel字段同时承载多个终端，默认通道0的消息格式与单终端时相同
  * @date 2025年01月01日
  */
 @Component
-public class TerminalWebSocketHandler implements WebSocketHandler {
+public class TerminalWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
+
+    /** 二进制输出子协议：终端输出以BinaryMessage发送，控制消息仍为JSON文本 */
+    public static final String BINARY_PROTOCOL = "terminal.binary.v1";
+    /** 二进制帧类型头：终端输出 */
+    public static final byte FRAME_TYPE_OUTPUT = 0x01;
+    /** 二进制帧类型头：非默认通道的终端输出，其后两字节为大端序通道号 */
+    public static final byte FRAME_TYPE_CHANNEL_OUTPUT = 0x02;
+    /** 最大通道号 */
+    public static final int MAX_CHANNEL = 0xFFFF;
+
+    private static final int READ_BUFFER_SIZE = 1024;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    // 输出泵、发送队列和Tab补全任务的执行器，以及输出合并的定时刷新调度器
+    private final ExecutorService executorService;
+    private final ScheduledExecutorService flushScheduler;
     
-    // 存储WebSocket会话和对应的SSH连接
+    // 存储WebSocket会话、发送队列，以及每个连接上按通道号挂载的终端
     private final ConcurrentHashMap<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Session> sshSessions = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Object> channels = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Object> sessionLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TerminalOutboundQueue> outboundQueues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<Integer, WebSocketSink>> attachments = new ConcurrentHashMap<>();
+    // 恢复令牌到终端，包括暂无连接、处于宽限期的终端
+    private final ConcurrentHashMap<String, TerminalSession> terminals = new ConcurrentHashMap<>();
+
+    private final TerminalProperties terminalProperties;
+    private final SshSessionPool sshSessionPool;
+    private final TabCompletionService tabCompletionService;
+    private final SessionResourceMonitor sessionResourceMonitor;
+    private final TerminalFrameEncoder frameEncoder;
+    private final Counter framesSentCounter;
+    private final DistributionSummary frameSizeSummary;
+    private final TerminalOutboundQueue.Meters outboundMeters;
+    // SSH主机是本机时shell进程在本机上，可以按进程号统计资源
+    private final boolean sshHostLocal;
+
+    public TerminalWebSocketHandler(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors,
+                                    SshSessionPool sshSessionPool, TabCompletionService tabCompletionService,
+                                    SessionResourceMonitor sessionResourceMonitor, MeterRegistry meterRegistry) {
+        this.terminalProperties = terminalProperties;
+        this.sshSessionPool = sshSessionPool;
+        this.tabCompletionService = tabCompletionService;
+        this.sessionResourceMonitor = sessionResourceMonitor;
+        this.frameEncoder = new TerminalFrameEncoder(
+                ControlCharFilter.of(terminalProperties.getOutput().isKeepEscapeSequences()));
+        this.executorService = terminalExecutors.getExecutor();
+        this.flushScheduler = terminalExecutors.getScheduler();
+        this.framesSentCounter = Counter.builder("terminal.output.frames")
+                .description("发送到前端的终端输出帧数")
+                .register(meterRegistry);
+        this.frameSizeSummary = DistributionSummary.builder("terminal.output.frame.size")
+                .description("每帧终端输出的长度")
+                .register(meterRegistry);
+        this.outboundMeters = new TerminalOutboundQueue.Meters(meterRegistry);
+        this.sshHostLocal = isLoopback(terminalProperties.getSsh().getHost());
+        Gauge.builder("terminal.sessions", terminals, Map::size)
+                .description("当前终端数，包括等待重新连接的终端")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        if (!terminalProperties.getOutput().isBinaryProtocolEnabled()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(BINARY_PROTOCOL);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String sessionId = session.getId();
         sessions.put(sessionId, session);
+        TerminalProperties.Outbound outboundConfig = terminalProperties.getOutbound();
+        outboundQueues.put(sessionId, new TerminalOutboundQueue(session, outboundConfig.getMaxQueuedBytes(),
+                outboundConfig.getOverflowPolicy(), executorService, outboundMeters));
+        attachments.put(sessionId, new ConcurrentHashMap<>());
         System.out.println("WebSocket连接建立: " + sessionId);
         
         // 发送连接成功消息
@@ -50,22 +138,31 @@ public class TerminalWebSocketHandler implements WebSocketHandler {
         try {
             JsonNode jsonNode = objectMapper.readTree(payload);
             String type = jsonNode.get("type").asText();
+            // 消息所属的终端通道，缺省为默认通道0
+            int channel = jsonNode.hasNonNull("channel") ? jsonNode.get("channel").asInt() : 0;
+            if (channel < 0 || channel > MAX_CHANNEL) {
+                sendMessage(session, "error", "无效的通道号: " + channel);
+                return;
+            }
             
             switch (type) {
                 case "connect":
-                    handleConnect(session, jsonNode);
+                    handleConnect(session, channel, jsonNode);
                     break;
                 case "command":
-                    handleCommand(sessionId, jsonNode.get("data").asText());
+                    handleCommand(sessionId, channel, jsonNode.get("data").asText());
                     break;
                 case "resize":
-                    handleResize(sessionId, jsonNode);
+                    handleResize(sessionId, channel, jsonNode);
                     break;
                 case "tab_completion":
-                    handleTabCompletion(sessionId, jsonNode.get("data").asText());
+                    handleTabCompletion(sessionId, channel, jsonNode.get("data").asText());
+                    break;
+                case "disconnect":
+                    handleDisconnect(sessionId, channel);
                     break;
                 default:
-                    sendMessage(session, "error", "未知的消息类型: " + type);
+                    sendMessage(session, channel, "error", "未知的消息类型: " + type, -1);
             }
         } catch (Exception e) {
             sendMessage(session, "error", "处理消息时发生错误: " + e.getMessage());
@@ -74,8 +171,8 @@ public class TerminalWebSocketHandler implements WebSocketHandler {
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        // 随后会回调afterConnectionClosed，终端在那里进入宽限期
         System.err.println("WebSocket传输错误: " + exception.getMessage());
-        closeSSHConnection(session.getId());
     }
 
     @Override
@@ -84,8 +181,18 @@ public class TerminalWebSocketHandler implements WebSocketHandler {
         System.out.println("WebSocket连接关闭: " + sessionId);
         
         sessions.remove(sessionId);
-        sessionLocks.remove(sessionId);
-        closeSSHConnection(sessionId);
+        TerminalOutboundQueue outbound = outboundQueues.remove(sessionId);
+        if (outbound != null) {
+            outbound.close();
+        }
+        // 终端不随连接关闭，等待客户端在宽限期内重新连接
+        Map<Integer, WebSocketSink> sinks = attachments.remove(sessionId);
+        if (sinks != null) {
+            for (WebSocketSink sink : sinks.values()) {
+                sink.terminal.detach(sink, terminalProperties.getResume().getGracePeriodMillis());
+                sink.close();
+            }
+        }
     }
 
     @Override
@@ -94,507 +201,499 @@ public class TerminalWebSocketHandler implements WebSocketHandler {
     }
 
     /**
-     * 处理连接请求
+     * 应用关闭时断开所有终端，让输出泵线程随流关闭而退出
      */
-    private void handleConnect(WebSocketSession session, JsonNode jsonNode) {
+    @PreDestroy
+    public void destroy() {
+        terminals.values().forEach(TerminalSession::close);
+        outboundQueues.values().forEach(TerminalOutboundQueue::close);
+        attachments.values().forEach(sinks -> sinks.values().forEach(WebSocketSink::close));
+    }
+
+    /**
+     * 处理连接请求：携带有效恢复令牌时接回原终端，否则新建终端
+     */
+    private void handleConnect(WebSocketSession session, int channel, JsonNode jsonNode) {
         String sessionId = session.getId();
+        String resumeToken = jsonNode.hasNonNull("resumeToken") ? jsonNode.get("resumeToken").asText() : null;
+        long offset = jsonNode.hasNonNull("offset") ? Math.max(jsonNode.get("offset").asLong(), 0) : 0;
+        
+        Map<Integer, WebSocketSink> sinks = attachments.get(sessionId);
+        if (sinks == null) {
+            return;
+        }
+        // 同一通道重复connect时，原终端进入宽限期
+        WebSocketSink current = sinks.get(channel);
+        if (current != null && removeSink(current)) {
+            current.terminal.detach(current, terminalProperties.getResume().getGracePeriodMillis());
+            current.close();
+        } else if (sinks.size() >= terminalProperties.getMultiplex().getMaxChannels()) {
+            sendMessage(session, channel, "error",
+                    "单个连接的终端数已达上限（" + terminalProperties.getMultiplex().getMaxChannels() + "）", -1);
+            return;
+        }
+        
+        if (resumeToken != null) {
+            TerminalSession terminal = terminals.get(resumeToken);
+            if (terminal != null && attach(session, channel, terminal, offset)) {
+                sendMessage(session, channel, "connected", "终端已恢复", -1);
+                return;
+            }
+            sendMessage(session, channel, "error", "终端已关闭或恢复令牌已失效，正在打开新终端", -1);
+        }
         
         try {
-            // 对于本地终端，我们直接连接到本地
-            String host = "localhost";
-            String username = System.getProperty("user.name");
-            
-            // 创建JSch会话
-            JSch jsch = new JSch();
-            Session sshSession;
-            
-            // 检查是否为Windows系统
-            String os = System.getProperty("os.name").toLowerCase();
-            if (os.contains("win")) {
-                // Windows系统，使用PowerShell
-                connectLocalWindows(session, sessionId);
+            TerminalSession terminal = openTerminal();
+            if (attach(session, channel, terminal, 0)) {
+                sendMessage(session, channel, "connected", "终端连接成功", -1);
             } else {
-                // Unix/Linux系统，使用SSH
-                sshSession = jsch.getSession(username, host, 22);
-                sshSession.setConfig("StrictHostKeyChecking", "no");
-                sshSession.connect();
-                
-                sshSessions.put(sessionId, sshSession);
-                
-                // 创建shell通道
-                ChannelShell channelShell = (ChannelShell) sshSession.openChannel("shell");
-                channelShell.setPtyType("xterm");
-                channelShell.setPtySize(80, 24, 640, 480);
-                
-                channels.put(sessionId, channelShell);
-                
-                // 设置输入输出流
-                setupStreams(session, channelShell);
-                
-                channelShell.connect();
+                sendMessage(session, channel, "error", "终端已退出", -1);
             }
-            
-            sendMessage(session, "connected", "终端连接成功");
-            
+        } catch (RejectedExecutionException e) {
+            sendMessage(session, channel, "error", "终端数量已达上限，请稍后重试", -1);
         } catch (Exception e) {
-            sendMessage(session, "error", "连接终端失败: " + e.getMessage());
+            sendMessage(session, channel, "error", "连接终端失败: " + e.getMessage(), -1);
         }
     }
-    
+
     /**
-     * Windows本地连接
+     * 把终端挂到连接的指定通道上并补发错过的输出，终端已被其它通道占用时由本通道接管
+     * @return 终端已关闭时返回false
      */
-    private void connectLocalWindows(WebSocketSession session, String sessionId) {
+    private boolean attach(WebSocketSession session, int channel, TerminalSession terminal, long offset) {
+        WebSocketSink sink = new WebSocketSink(session, channel, terminal);
+        TerminalSession.OutputSink previous;
         try {
-            System.out.println("[DEBUG] 启动Windows本地PowerShell连接: sessionId=" + sessionId);
-            // 启动PowerShell进程，使用系统默认编码
-            ProcessBuilder processBuilder = new ProcessBuilder("powershell.exe", "-ExecutionPolicy", "Bypass");
-            processBuilder.environment().putAll(System.getenv());
-            System.out.println("[DEBUG] ProcessBuilder配置完成，启动进程...");
-            Process process = processBuilder.start();
-            System.out.println("[DEBUG] PowerShell进程启动成功: " + process.isAlive());
-            
-            // 创建一个模拟的Channel来统一处理
-            LocalProcessChannel localChannel = new LocalProcessChannel(process);
-            channels.put(sessionId, localChannel);
-            System.out.println("[DEBUG] LocalProcessChannel创建并存储完成");
-            
-            // 设置输入输出流
-            System.out.println("[DEBUG] 开始设置输入输出流...");
-            setupStreams(session, localChannel);
-            System.out.println("[DEBUG] 输入输出流设置完成");
-            
-        } catch (Exception e) {
-            System.out.println("[DEBUG] 启动PowerShell失败: " + e.getMessage());
-            e.printStackTrace();
-            sendMessage(session, "error", "启动本地PowerShell失败: " + e.getMessage());
+            previous = terminal.attach(sink, offset);
+        } catch (IllegalStateException e) {
+            sink.close();
+            return false;
+        }
+        Map<Integer, WebSocketSink> sinks = attachments.get(session.getId());
+        if (sinks == null) {
+            // 连接已在此期间关闭
+            terminal.detach(sink, terminalProperties.getResume().getGracePeriodMillis());
+            sink.close();
+            return true;
+        }
+        sinks.put(channel, sink);
+        if (previous instanceof WebSocketSink) {
+            WebSocketSink replaced = (WebSocketSink) previous;
+            if (removeSink(replaced)) {
+                sendMessage(replaced.session, replaced.channel, "error", "终端已在其它连接中打开", -1);
+            }
+            replaced.close();
         }
+        return true;
     }
 
     /**
-     * 设置输入输出流
+     * 主动断开：立即关闭通道上的终端，不进入宽限期
      */
-    private void setupStreams(WebSocketSession session, Object channelObj) {
+    private void handleDisconnect(String sessionId, int channel) {
+        WebSocketSink sink = getSink(sessionId, channel);
+        if (sink != null && removeSink(sink)) {
+            sink.terminal.close();
+            sink.close();
+        }
+    }
+
+    private WebSocketSink getSink(String sessionId, int channel) {
+        Map<Integer, WebSocketSink> sinks = attachments.get(sessionId);
+        return sinks != null ? sinks.get(channel) : null;
+    }
+
+    /**
+     * 从连接上移除通道，只有移除的正是该对象时返回true
+     */
+    private boolean removeSink(WebSocketSink sink) {
+        Map<Integer, WebSocketSink> sinks = attachments.get(sink.session.getId());
+        return sinks != null && sinks.remove(sink.channel, sink);
+    }
+
+    /**
+     * 打开新终端：Windows为本地PowerShell，其余通过SSH连接池打开shell通道
+     */
+    private TerminalSession openTerminal() throws Exception {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win")) {
+            return connectLocalWindows();
+        }
+        // 对于本地终端，我们直接连接到本地
+        String username = System.getProperty("user.name");
+        ChannelShell channelShell = sshSessionPool.openShell(username);
+        TerminalSession terminal = null;
         try {
-            InputStream inputStream = null;
-            InputStream errorStream = null;
-            OutputStream outputStream = null;
-            
-            // 根据类型获取输入输出流
-            if (channelObj instanceof Channel) {
-                Channel channel = (Channel) channelObj;
-                inputStream = channel.getInputStream();
-                outputStream = channel.getOutputStream();
-                // SSH连接通常将错误输出合并到标准输出
-                errorStream = null;
-            } else if (channelObj instanceof LocalProcessChannel) {
-                LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                inputStream = localChannel.getInputStream();
-                outputStream = localChannel.getOutputStream();
-                errorStream = localChannel.getErrorStream();
+            channelShell.setPtyType("xterm");
+            channelShell.setPtySize(80, 24, 640, 480);
+            // JSch要求在connect之前取得输入输出流
+            InputStream inputStream = channelShell.getInputStream();
+            String nonce = sshHostLocal ? UUID.randomUUID().toString().replace("-", "") : null;
+            terminal = registerTerminal(channelShell, channelShell.getOutputStream(), nonce);
+            // SSH连接通常将错误输出合并到标准输出
+            terminal.start(inputStream, null, resolveCharset(channelShell));
+            channelShell.connect();
+            if (nonce != null) {
+                terminal.write(shellInitCommand(nonce).getBytes(StandardCharsets.UTF_8));
             }
-            
-            if (inputStream == null || outputStream == null) {
-                sendMessage(session, "error", "无法获取终端输入输出流");
-                return;
+            return terminal;
+        } catch (Exception e) {
+            // 终端已登记时由它注销并释放通道，只释放一次
+            if (terminal != null) {
+                terminal.close();
+            } else {
+                closeChannel(channelShell);
             }
-            
-            final InputStream finalInputStream = inputStream;
-            final InputStream finalErrorStream = errorStream;
-            
-            // 异步读取终端标准输出
-            executorService.submit(() -> {
-                byte[] buffer = new byte[1024];
-                try {
-                    boolean isConnected = true;
-                    while (isConnected) {
-                        // 检查连接状态
-                        if (channelObj instanceof Channel) {
-                            Channel channel = (Channel) channelObj;
-                            isConnected = channel.isConnected() && !channel.isClosed();
-                        } else if (channelObj instanceof LocalProcessChannel) {
-                            LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                            isConnected = localChannel.isConnected() && !localChannel.isClosed();
-                        }
-                        
-                        if (!isConnected) break;
-                        
-                        // 使用非阻塞读取，但也尝试阻塞读取以处理交互式程序
-                        try {
-                            int bytesRead = 0;
-                            int available = finalInputStream.available();
-                            System.out.println("[DEBUG] 输出流检查: available=" + available);
-                            
-                            if (available > 0) {
-                                // 有数据立即可用，直接读取
-                                bytesRead = finalInputStream.read(buffer);
-                                System.out.println("[DEBUG] 立即读取数据: bytesRead=" + bytesRead);
-                            } else {
-                                // 没有立即可用的数据，短暂休眠后继续
-                                // 避免无限阻塞等待，特别是对于Python等可能不立即输出的程序
-                                System.out.println("[DEBUG] 没有立即可用数据，短暂休眠...");
-                                Thread.sleep(100);
-                            }
-                            
-                            if (bytesRead > 0) {
-                                // 根据操作系统选择合适的字符编码
-                                String charset = System.getProperty("os.name").toLowerCase().contains("windows") ? "GBK" : "UTF-8";
-                                String output = new String(buffer, 0, bytesRead, charset);
-                                System.out.println("[DEBUG] 发送输出到前端: length=" + output.length() + ", content=" + output.replace("\n", "\\n").replace("\r", "\\r"));
-                                sendMessage(session, "output", output);
-                            }
-                        } catch (java.io.InterruptedIOException e) {
-                            System.out.println("[DEBUG] 读取超时: " + e.getMessage());
-                            // 读取超时，继续循环
-                            Thread.sleep(50);
-                        }
-                    }
-                } catch (Exception e) {
-                    boolean stillConnected = false;
-                    if (channelObj instanceof Channel) {
-                        Channel channel = (Channel) channelObj;
-                        stillConnected = channel.isConnected();
-                    } else if (channelObj instanceof LocalProcessChannel) {
-                        LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                        stillConnected = localChannel.isConnected();
-                    }
-                    
-                    if (stillConnected) {
-                        sendMessage(session, "error", "读取终端输出时发生错误: " + e.getMessage());
-                    }
-                }
-            });
-            
-            // 如果有错误流，异步读取终端错误输出
-            if (finalErrorStream != null) {
-                executorService.submit(() -> {
-                    byte[] buffer = new byte[1024];
-                    try {
-                        boolean isConnected = true;
-                        while (isConnected) {
-                            // 检查连接状态
-                            if (channelObj instanceof LocalProcessChannel) {
-                                LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                                isConnected = localChannel.isConnected() && !localChannel.isClosed();
-                            }
-                            
-                            if (!isConnected) break;
-                            
-                            // 使用非阻塞读取，但也尝试阻塞读取以处理交互式程序
-                            try {
-                                int bytesRead = 0;
-                                if (finalErrorStream.available() > 0) {
-                                    // 有数据立即可用，直接读取
-                                    bytesRead = finalErrorStream.read(buffer);
-                                } else {
-                                    // 没有立即可用的数据，尝试短时间阻塞读取
-                                    finalErrorStream.mark(1);
-                                    int firstByte = finalErrorStream.read();
-                                    if (firstByte != -1) {
-                                        buffer[0] = (byte) firstByte;
-                                        bytesRead = 1;
-                                        // 使用非阻塞方式尝试读取更多数据
-                                        int additionalAvailable = finalErrorStream.available();
-                                        if (additionalAvailable > 0) {
-                                            int additionalBytes = finalErrorStream.read(buffer, 1, Math.min(additionalAvailable, buffer.length - 1));
-                                            if (additionalBytes > 0) {
-                                                bytesRead += additionalBytes;
-                                            }
-                                        }
-                                    } else {
-                                        // 没有数据，短暂休眠
-                                        Thread.sleep(50);
-                                    }
-                                }
-                                
-                                if (bytesRead > 0) {
-                                    // 根据操作系统选择合适的字符编码
-                                    String charset = System.getProperty("os.name").toLowerCase().contains("windows") ? "GBK" : "UTF-8";
-                                    String errorOutput = new String(buffer, 0, bytesRead, charset);
-                                    sendMessage(session, "output", errorOutput); // 错误输出也作为普通输出显示
-                                }
-                            } catch (java.io.InterruptedIOException e) {
-                                // 读取超时，继续循环
-                                // 没有数据时短暂休眠，避免CPU占用过高
-                                Thread.sleep(50);
-                            }
-                        }
-                    } catch (Exception e) {
-                        if (channelObj instanceof LocalProcessChannel) {
-                            LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                            if (localChannel.isConnected()) {
-                                sendMessage(session, "error", "读取终端错误输出时发生错误: " + e.getMessage());
-                            }
-                        }
+            throw e;
+        }
+    }
+
+    /**
+     * Windows本地连接
+     */
+    private TerminalSession connectLocalWindows() throws IOException {
+        System.out.println("[DEBUG] 启动Windows本地PowerShell连接");
+        // 启动PowerShell进程，使用系统默认编码
+        ProcessBuilder processBuilder = new ProcessBuilder("powershell.exe", "-ExecutionPolicy", "Bypass");
+        processBuilder.environment().putAll(System.getenv());
+        Process process = processBuilder.start();
+        System.out.println("[DEBUG] PowerShell进程启动成功: " + process.isAlive());
+        
+        // 创建一个模拟的Channel来统一处理
+        LocalProcessChannel localChannel = new LocalProcessChannel(process);
+        TerminalSession terminal = null;
+        try {
+            terminal = registerTerminal(localChannel, localChannel.getOutputStream(), null);
+            terminal.start(localChannel.getInputStream(), localChannel.getErrorStream(), resolveCharset(localChannel));
+            return terminal;
+        } catch (RuntimeException e) {
+            if (terminal != null) {
+                terminal.close();
+            } else {
+                closeChannel(localChannel);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 创建终端并按恢复令牌登记，终端关闭时释放通道并注销
+     * 本地终端和本机SSH终端同时登记资源统计；恢复令牌不能外泄，统计中以进程号标识终端
+     * @param shellPidNonce 本机SSH终端等待shell报告进程号时使用的随机串，其它情况为null
+     */
+    private TerminalSession registerTerminal(Object channelObj, OutputStream outputStream, String shellPidNonce) {
+        String token = UUID.randomUUID().toString();
+        AtomicReference<String> resourceId = new AtomicReference<>();
+        TerminalSession terminal = new TerminalSession(token, channelObj, outputStream,
+                terminalProperties.getResume().getScrollbackSize(), flushScheduler, executorService, () -> {
+                    terminals.remove(token);
+                    String tracked = resourceId.getAndSet(null);
+                    if (tracked != null) {
+                        sessionResourceMonitor.untrack(tracked);
                     }
+                    closeChannel(channelObj);
                 });
-            }
-            
-        } catch (Exception e) {
-            sendMessage(session, "error", "设置终端流时发生错误: " + e.getMessage());
+        terminals.put(token, terminal);
+        if (channelObj instanceof LocalProcessChannel) {
+            trackTerminal(terminal, resourceId, ((LocalProcessChannel) channelObj).toHandle());
+        } else if (shellPidNonce != null) {
+            terminal.expectShellPid(shellPidNonce, pid -> ProcessHandle.of(pid)
+                    .filter(TerminalWebSocketHandler::isOwnShell)
+                    .ifPresent(shell -> trackTerminal(terminal, resourceId, shell)));
+        }
+        return terminal;
+    }
+
+    private void trackTerminal(TerminalSession terminal, AtomicReference<String> resourceId, ProcessHandle shell) {
+        terminal.setShellPid(shell.pid());
+        String id = "terminal-" + shell.pid();
+        sessionResourceMonitor.track(id, "terminal", shell, terminal::close);
+        resourceId.set(id);
+        // 登记期间终端可能已关闭，此时释放回调已经执行过，由这里注销
+        if (terminal.isClosed() && resourceId.compareAndSet(id, null)) {
+            sessionResourceMonitor.untrack(id);
+        }
+    }
+
+    /**
+     * 本机SSH shell启动后执行的初始化命令：以私有OSC序列报告shell进程号，随后清屏去掉命令回显
+     * 命令以空格开头，不进入shell历史
+     */
+    private static String shellInitCommand(String nonce) {
+        return " printf '\\033]" + TerminalSession.SHELL_PID_OSC + ";%s;%s\\007\\033[H\\033[2J' "
+                + nonce + " \"$$\"\n";
+    }
+
+    /**
+     * 报告的进程须是本用户的进程且不是应用自身，避免按伪造的进程号统计或结束无关进程
+     */
+    private static boolean isOwnShell(ProcessHandle shell) {
+        return shell.pid() != ProcessHandle.current().pid()
+                && shell.info().user().map(System.getProperty("user.name")::equals).orElse(false);
+    }
+
+    private static boolean isLoopback(String host) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress() || address.isAnyLocalAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 确定终端输出的字符编码：Windows本地PowerShell为GBK，其余为UTF-8
+     */
+    private Charset resolveCharset(Object channelObj) {
+        if (channelObj instanceof LocalProcessChannel
+                && System.getProperty("os.name").toLowerCase().contains("windows")) {
+            return Charset.forName("GBK");
         }
+        return StandardCharsets.UTF_8;
     }
 
     /**
      * 处理命令
      */
-    private void handleCommand(String sessionId, String command) {
-        System.out.println("[DEBUG] 处理命令: sessionId=" + sessionId + ", command=" + command.replace("\n", "\\n").replace("\r", "\\r"));
-        Object channelObj = channels.get(sessionId);
-        if (channelObj != null) {
-            try {
-                OutputStream outputStream = null;
-                boolean isConnected = false;
-                
-                // 根据类型获取输出流和连接状态
-                if (channelObj instanceof Channel) {
-                    Channel channel = (Channel) channelObj;
-                    System.out.println("[DEBUG] SSH Channel状态: connected=" + channel.isConnected() + ", closed=" + channel.isClosed());
-                    if (channel.isConnected()) {
-                        outputStream = channel.getOutputStream();
-                        isConnected = true;
-                    }
-                } else if (channelObj instanceof LocalProcessChannel) {
-                    LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                    System.out.println("[DEBUG] Local Process状态: connected=" + localChannel.isConnected() + ", closed=" + localChannel.isClosed());
-                    if (localChannel.isConnected()) {
-                        outputStream = localChannel.getOutputStream();
-                        isConnected = true;
-                    }
-                }
-                
-                if (isConnected && outputStream != null) {
-                    System.out.println("[DEBUG] 发送命令到输出流，字节数: " + command.getBytes("UTF-8").length);
-                    outputStream.write(command.getBytes("UTF-8"));
-                    outputStream.flush();
-                    System.out.println("[DEBUG] 命令发送完成并刷新输出流");
-                } else {
-                    System.out.println("[DEBUG] 无法发送命令: isConnected=" + isConnected + ", outputStream=" + (outputStream != null));
-                }
-            } catch (Exception e) {
-                System.out.println("[DEBUG] 发送命令时发生异常: " + e.getMessage());
-                e.printStackTrace();
-                WebSocketSession session = sessions.get(sessionId);
-                sendMessage(session, "error", "发送命令时发生错误: " + e.getMessage());
-            }
-        } else {
-            System.out.println("[DEBUG] 找不到对应的channel对象: sessionId=" + sessionId);
+    private void handleCommand(String sessionId, int channel, String command) {
+        WebSocketSink sink = getSink(sessionId, channel);
+        if (sink == null) {
+            System.out.println("[DEBUG] 找不到对应的终端: sessionId=" + sessionId + ", channel=" + channel);
+            return;
+        }
+        try {
+            sink.terminal.write(command.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            System.out.println("[DEBUG] 发送命令时发生异常: " + e.getMessage());
+            sendMessage(sink.session, channel, "error", "发送命令时发生错误: " + e.getMessage(), -1);
         }
     }
 
     /**
      * 处理终端大小调整
      */
-    private void handleResize(String sessionId, JsonNode jsonNode) {
-        Object channelObj = channels.get(sessionId);
-        if (channelObj instanceof ChannelShell) {
+    private void handleResize(String sessionId, int channel, JsonNode jsonNode) {
+        WebSocketSink sink = getSink(sessionId, channel);
+        if (sink != null && sink.terminal.getChannel() instanceof ChannelShell) {
             try {
                 int cols = jsonNode.get("cols").asInt();
                 int rows = jsonNode.get("rows").asInt();
-                ((ChannelShell) channelObj).setPtySize(cols, rows, cols * 8, rows * 16);
+                ((ChannelShell) sink.terminal.getChannel()).setPtySize(cols, rows, cols * 8, rows * 16);
             } catch (Exception e) {
-                WebSocketSession session = sessions.get(sessionId);
-                sendMessage(session, "error", "调整终端大小时发生错误: " + e.getMessage());
+                sendMessage(sink.session, channel, "error", "调整终端大小时发生错误: " + e.getMessage(), -1);
             }
         }
         // LocalProcessChannel 不支持动态调整大小
     }
 
     /**
-     * 处理Tab补全请求
+     * 处理Tab补全请求：在线程池中按终端当前工作目录补全，不占用WebSocket消息线程
      */
-    private void handleTabCompletion(String sessionId, String currentLine) {
-        try {
-            WebSocketSession session = sessions.get(sessionId);
-            if (session == null) {
-                return;
-            }
-            
-            // 获取当前行的最后一个单词（需要补全的部分）
-            String[] words = currentLine.trim().split("\\s+");
-            String lastWord = words.length > 0 ? words[words.length - 1] : "";
-            
-            // 检查操作系统类型
-            String os = System.getProperty("os.name").toLowerCase();
-            if (os.contains("win")) {
-                // Windows系统使用PowerShell的Tab补全
-                handleWindowsTabCompletion(sessionId, lastWord, currentLine);
-            } else {
-                // Unix/Linux系统使用bash的Tab补全
-                handleUnixTabCompletion(sessionId, lastWord, currentLine);
-            }
-        } catch (Exception e) {
-            System.err.println("处理Tab补全时发生错误: " + e.getMessage());
+    private void handleTabCompletion(String sessionId, int channel, String currentLine) {
+        WebSocketSink sink = getSink(sessionId, channel);
+        if (sink == null) {
+            return;
         }
-    }
-    
-    /**
-     * 处理Windows PowerShell的Tab补全
-     */
-    private void handleWindowsTabCompletion(String sessionId, String lastWord, String currentLine) {
         try {
-            WebSocketSession session = sessions.get(sessionId);
-            if (session == null) {
-                return;
-            }
-            
-            // 使用PowerShell的TabExpansion2命令进行补全
-            String tabCompletionScript = String.format(
-                "[System.Management.Automation.CommandCompletion]::CompleteInput('%s', %d, $null) | ConvertTo-Json",
-                currentLine.replace("'", "''"), currentLine.length()
-            );
-            
-            // 创建临时PowerShell进程执行补全命令
-            ProcessBuilder pb = new ProcessBuilder("powershell.exe", "-Command", tabCompletionScript);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            
-            // 读取补全结果
-            executorService.submit(() -> {
-                try (InputStream inputStream = process.getInputStream()) {
-                    byte[] buffer = new byte[1024];
-                    StringBuilder result = new StringBuilder();
-                    int bytesRead;
-                    
-                    while ((bytesRead = inputStream.read(buffer)) != -1) {
-                        result.append(new String(buffer, 0, bytesRead, "GBK"));
-                    }
-                    
-                    process.waitFor();
-                    
-                    // 解析补全结果并发送给前端
-                    parseAndSendCompletionResult(session, result.toString(), lastWord);
+            executorService.execute(() -> {
+                try {
+                    // SSH主机不是本机时本机文件系统与远端无关，不做补全
+                    List<String> completions = sink.terminal.getChannel() instanceof Channel && !sshHostLocal
+                            ? Collections.emptyList()
+                            : tabCompletionService.complete(currentLine, resolveWorkingDirectory(sink.terminal));
+                    sendMessage(sink.session, channel, "tab_completion_result",
+                            objectMapper.writeValueAsString(completions), -1);
                 } catch (Exception e) {
-                    System.err.println("读取PowerShell补全结果时发生错误: " + e.getMessage());
+                    System.err.println("处理Tab补全时发生错误: " + e.getMessage());
                 }
             });
-        } catch (Exception e) {
-            System.err.println("执行PowerShell Tab补全时发生错误: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // 线程池繁忙时放弃本次补全
         }
     }
-    
+
     /**
-     * 处理Unix/Linux bash的Tab补全
+     * 确定终端的工作目录：shell进程号已知时在Linux上读取/proc/{pid}/cwd，随cd实时变化；
+     * 其次使用shell通过OSC 7报告的目录；本地进程最后使用其启动目录。
+     * 都无法确定时返回null，只补全命令和绝对路径，不按无关目录补全
      */
-    private void handleUnixTabCompletion(String sessionId, String lastWord, String currentLine) {
-        try {
-            WebSocketSession session = sessions.get(sessionId);
-            if (session == null) {
-                return;
-            }
-            
-            // 简单的文件名补全实现
-            java.io.File currentDir = new java.io.File(System.getProperty("user.dir"));
-            java.io.File[] files = currentDir.listFiles();
-            
-            java.util.List<String> completions = new java.util.ArrayList<>();
-            if (files != null) {
-                for (java.io.File file : files) {
-                    if (file.getName().startsWith(lastWord)) {
-                        completions.add(file.getName());
-                    }
-                }
+    private Path resolveWorkingDirectory(TerminalSession terminal) {
+        long pid = terminal.getShellPid();
+        if (pid > 0) {
+            try {
+                return Paths.get("/proc", String.valueOf(pid), "cwd").toRealPath();
+            } catch (IOException | SecurityException e) {
+                // 无/proc或无权限时继续尝试其它来源
             }
-            
-            // 发送补全结果
-            sendMessage(session, "tab_completion_result", objectMapper.writeValueAsString(completions));
-        } catch (Exception e) {
-            System.err.println("执行Unix Tab补全时发生错误: " + e.getMessage());
         }
+        String reported = terminal.getWorkingDirectory();
+        if (reported != null) {
+            return Paths.get(reported);
+        }
+        if (terminal.getChannel() instanceof LocalProcessChannel) {
+            return Paths.get(System.getProperty("user.dir"));
+        }
+        return null;
     }
-    
+
     /**
-     * 解析并发送PowerShell补全结果
+     * 发送一帧合并后的终端输出并记录帧统计
      */
-    private void parseAndSendCompletionResult(WebSocketSession session, String jsonResult, String lastWord) {
-        try {
-            // 简化处理：如果PowerShell返回复杂的JSON，我们使用简单的文件名补全作为后备
-            java.io.File currentDir = new java.io.File(System.getProperty("user.dir"));
-            java.io.File[] files = currentDir.listFiles();
-            
-            java.util.List<String> completions = new java.util.ArrayList<>();
-            if (files != null) {
-                for (java.io.File file : files) {
-                    if (file.getName().toLowerCase().startsWith(lastWord.toLowerCase())) {
-                        completions.add(file.getName());
-                    }
-                }
-            }
-            
-            // 添加常用PowerShell命令补全
-            String[] commonCommands = {"Get-ChildItem", "Get-Location", "Set-Location", "Get-Process", 
-                                     "Get-Service", "Start-Process", "Stop-Process", "Clear-Host", "Get-Help"};
-            for (String cmd : commonCommands) {
-                if (cmd.toLowerCase().startsWith(lastWord.toLowerCase())) {
-                    completions.add(cmd);
-                }
-            }
-            
-            sendMessage(session, "tab_completion_result", objectMapper.writeValueAsString(completions));
-        } catch (Exception e) {
-            System.err.println("解析PowerShell补全结果时发生错误: " + e.getMessage());
+    private void sendOutputFrame(WebSocketSession session, int channel, String frame, long offset,
+                                 StringBuilder buffer) {
+        framesSentCounter.increment();
+        frameSizeSummary.record(frame.length());
+        sendMessage(session, channel, "output", frame, offset, buffer);
+    }
+
+    /**
+     * 发送一帧二进制终端输出，帧以类型头开头，非默认通道还带两字节通道号
+     */
+    private void sendBinaryOutputFrame(WebSocketSession session, int channel, byte[] frame) {
+        TerminalOutboundQueue outbound = outboundQueues.get(session.getId());
+        if (outbound == null || !session.isOpen()) {
+            return;
         }
+        framesSentCounter.increment();
+        frameSizeSummary.record(frame.length - (channel == 0 ? 1 : 3));
+        outbound.enqueue(channel, new BinaryMessage(frame), frame.length);
     }
 
     /**
      * 发送消息到WebSocket客户端
      */
     private void sendMessage(WebSocketSession session, String type, String data) {
+        sendMessage(session, 0, type, data, -1);
+    }
+
+    /**
+     * 发送指定通道的消息到WebSocket客户端，offset非负时附带输出位置
+     */
+    private void sendMessage(WebSocketSession session, int channel, String type, String data, long offset) {
+        sendMessage(session, channel, type, data, offset, null);
+    }
+
+    /**
+     * @param buffer 调用方复用的编码缓冲区，为null时新建
+     */
+    private void sendMessage(WebSocketSession session, int channel, String type, String data, long offset,
+                             StringBuilder buffer) {
         if (session == null || !session.isOpen()) {
             return;
         }
         
-        String sessionId = session.getId();
-        Object lock = sessionLocks.computeIfAbsent(sessionId, k -> new Object());
+        TerminalOutboundQueue outbound = outboundQueues.get(session.getId());
+        if (outbound == null) {
+            return;
+        }
         
-        synchronized (lock) {
-            try {
-                if (session.isOpen()) {
-                    // 清理数据中的控制字符，避免xterm.js解析错误
-                    String cleanData = data.replaceAll("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]", "");
-                    
-                    // 使用ObjectMapper确保JSON格式正确
-                    java.util.Map<String, String> messageMap = new java.util.HashMap<>();
-                    messageMap.put("type", type);
-                    messageMap.put("data", cleanData);
-                    String message = objectMapper.writeValueAsString(messageMap);
-                    session.sendMessage(new TextMessage(message));
-                }
-            } catch (Exception e) {
-                System.err.println("发送WebSocket消息失败: " + e.getMessage());
-                e.printStackTrace();
-            }
+        try {
+            // 编码时同时清理控制字符，避免xterm.js解析错误
+            String message = buffer != null
+                    ? frameEncoder.encode(buffer, type, data, offset, channel)
+                    : frameEncoder.encode(type, data, offset, channel);
+            // 入队后由发送任务异步发送，慢客户端不会阻塞调用线程；各通道轮流发送
+            outbound.enqueue(channel, new TextMessage(message), message.length());
+        } catch (Exception e) {
+            System.err.println("发送WebSocket消息失败: " + e.getMessage());
+            e.printStackTrace();
         }
     }
 
     /**
-     * 关闭SSH连接
+     * 释放终端通道
      */
-    private void closeSSHConnection(String sessionId) {
+    private void closeChannel(Object channelObj) {
         try {
-            Object channelObj = channels.remove(sessionId);
-            if (channelObj != null) {
-                if (channelObj instanceof Channel) {
-                    Channel channel = (Channel) channelObj;
-                    if (channel.isConnected()) {
-                        channel.disconnect();
-                    }
-                } else if (channelObj instanceof LocalProcessChannel) {
-                    LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
-                    if (localChannel.isConnected()) {
-                        localChannel.disconnect();
-                    }
+            if (channelObj instanceof Channel) {
+                // 只断开通道，SSH会话归还连接池
+                sshSessionPool.releaseShell((Channel) channelObj);
+            } else if (channelObj instanceof LocalProcessChannel) {
+                LocalProcessChannel localChannel = (LocalProcessChannel) channelObj;
+                if (localChannel.isConnected()) {
+                    localChannel.disconnect();
                 }
             }
-            
-            Session sshSession = sshSessions.remove(sessionId);
-            if (sshSession != null && sshSession.isConnected()) {
-                sshSession.disconnect();
-            }
         } catch (Exception e) {
             System.err.println("关闭SSH连接时发生错误: " + e.getMessage());
         }
     }
+
+    /**
+     * 挂在终端上的WebSocket连接：把终端输出合并成帧发送，每个连接有自己的合并器
+     * 二进制模式下客户端按收到的字节数自行累计输出位置；文本模式下每帧附带末尾位置，
+     * 未解码完的多字节字符不计入，保证位置始终落在字符边界上
+     */
+    private final class WebSocketSink implements TerminalSession.OutputSink {
+        final WebSocketSession session;
+        final int channel;
+        final TerminalSession terminal;
+        private final TerminalOutputAggregator aggregator;
+        private final TerminalStreamDecoder decoder;
+        // 文本帧编码缓冲区，只在合并器的发送回调中使用，由合并器的锁串行
+        private final StringBuilder frameBuffer = new StringBuilder(1024);
+
+        WebSocketSink(WebSocketSession session, int channel, TerminalSession terminal) {
+            this.session = session;
+            this.channel = channel;
+            this.terminal = terminal;
+            TerminalProperties.Output outputConfig = terminalProperties.getOutput();
+            if (BINARY_PROTOCOL.equals(session.getAcceptedProtocol())) {
+                byte[] header = channel == 0
+                        ? new byte[]{FRAME_TYPE_OUTPUT}
+                        : new byte[]{FRAME_TYPE_CHANNEL_OUTPUT, (byte) (channel >>> 8), (byte) channel};
+                this.aggregator = TerminalOutputAggregator.binary(outputConfig.getMaxFrameSize(),
+                        outputConfig.getFlushDelayMillis(), flushScheduler, header,
+                        frame -> sendBinaryOutputFrame(session, channel, frame));
+                this.decoder = null;
+            } else {
+                this.aggregator = TerminalOutputAggregator.text(outputConfig.getMaxFrameSize(),
+                        outputConfig.getFlushDelayMillis(), flushScheduler, this::sendTextFrame);
+                this.decoder = new TerminalStreamDecoder(StandardCharsets.UTF_8, READ_BUFFER_SIZE);
+            }
+        }
+
+        @Override
+        public void attached(String token, long startOffset) {
+            sendMessage(session, channel, "session_token", token, startOffset);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length, long endOffset) {
+            if (decoder == null) {
+                aggregator.append(bytes, offset, length);
+            } else {
+                CharBuffer chars = decoder.decode(bytes, offset, length);
+                aggregator.append(chars, endOffset - decoder.pendingBytes());
+            }
+        }
+
+        @Override
+        public void terminated(String error) {
+            aggregator.flush();
+            if (error != null) {
+                sendMessage(session, channel, "error", error, -1);
+            }
+            removeSink(this);
+            close();
+        }
+
+        @Override
+        public void awaitCapacity() throws InterruptedException {
+            TerminalOutboundQueue outbound = outboundQueues.get(session.getId());
+            if (outbound != null) {
+                outbound.awaitCapacity(channel);
+            }
+        }
+
+        void close() {
+            aggregator.close();
+        }
+
+        private void sendTextFrame(String frame) {
+            sendOutputFrame(session, channel, frame, aggregator.getEndOffset(), frameBuffer);
+        }
+    }
     
     /**
      * 本地进程通道实现
@@ -607,6 +706,14 @@ public class TerminalWebSocketHandler implements WebSocketHandler {
             this.process = process;
         }
         
+        public long pid() {
+            return process.pid();
+        }
+        
+        public ProcessHandle toHandle() {
+            return process.toHandle();
+        }
+        
         public InputStream getInputStream() throws IOException {
             return process.getInputStream();
         }
@@ -0,0 +1,235 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import com.jeckchen.demo.dto.BatchCommandRequest;
+import com.jeckchen.demo.dto.BatchCommandResponse;
+import com.jeckchen.demo.dto.CommandRequest;
+import com.jeckchen.demo.dto.CommandResponse;
+import com.jeckchen.demo.service.CommandExecutionRegistry.RunningCommand;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className CommandBatchService.java
+ * @description 批量命令执行
+ * 一次请求执行多条命令，可按顺序或并行执行；并行时用信号量限制同时运行的命令数，
+ * 结果可汇总后一次返回，也可在每条命令完成时以SSE事件推送；
+ * 取消时尚未开始的命令不再执行，正在运行的命令通过 {@link CommandExecutionRegistry} 结束整棵进程树
+ * @date 2026年10月17日
+ */
+@Component
+public class CommandBatchService {
+
+    private final TerminalProperties.Batch config;
+    private final TerminalExecutors terminalExecutors;
+    private final CommandExecutionService commandExecutionService;
+    private final CommandExecutionRegistry commandExecutionRegistry;
+
+    public CommandBatchService(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors,
+                               CommandExecutionService commandExecutionService,
+                               CommandExecutionRegistry commandExecutionRegistry) {
+        this.config = terminalProperties.getBatch();
+        this.terminalExecutors = terminalExecutors;
+        this.commandExecutionService = commandExecutionService;
+        this.commandExecutionRegistry = commandExecutionRegistry;
+    }
+
+    /**
+     * 执行全部命令后汇总返回，结果顺序与请求一致
+     */
+    public BatchCommandResponse execute(BatchCommandRequest request) {
+        String error = validate(request);
+        if (error != null) {
+            return new BatchCommandResponse(false, null, error, null);
+        }
+        long startTime = System.currentTimeMillis();
+        CommandResponse[] results = new CommandResponse[request.getCommands().size()];
+        BatchRun run = new BatchRun(request, (index, result) -> results[index] = result);
+        run.execute();
+        boolean success = Arrays.stream(results)
+                .allMatch(result -> result != null && Boolean.TRUE.equals(result.getSuccess()));
+        return new BatchCommandResponse(success, Arrays.asList(results), null,
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 以SSE事件流执行：start（命令总数）、每条命令完成时一个result事件（完成顺序）、end
+     * 连接超时或客户端断开后不再启动新的命令，正在运行的命令被取消
+     */
+    public SseEmitter stream(BatchCommandRequest request) {
+        SseEmitter emitter = commandExecutionService.createEmitter(request.getTimeoutSeconds());
+        String error = validate(request);
+        if (error != null) {
+            send(emitter, SseEmitter.event().name("error").data(error));
+            emitter.complete();
+            return emitter;
+        }
+
+        boolean[] success = {true};
+        BatchRun run = new BatchRun(request, (index, result) -> {
+            Map<String, Object> data = new HashMap<>();
+            data.put("index", index);
+            data.put("result", result);
+            synchronized (success) {
+                success[0] &= Boolean.TRUE.equals(result.getSuccess());
+            }
+            send(emitter, SseEmitter.event().name("result").data(data));
+        });
+        emitter.onTimeout(run::cancel);
+        emitter.onError(e -> run.cancel());
+        emitter.onCompletion(run::cancel);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            terminalExecutors.getExecutor().execute(() -> {
+                send(emitter, SseEmitter.event().name("start").data(Map.of("total", request.getCommands().size())));
+                run.execute();
+                Map<String, Object> endData = new HashMap<>();
+                synchronized (success) {
+                    endData.put("success", success[0]);
+                }
+                endData.put("executionTime", System.currentTimeMillis() - startTime);
+                send(emitter, SseEmitter.event().name("end").data(endData));
+                emitter.complete();
+            });
+        } catch (RejectedExecutionException e) {
+            send(emitter, SseEmitter.event().name("error").data("服务繁忙，请稍后重试"));
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private String validate(BatchCommandRequest request) {
+        List<CommandRequest> commands = request.getCommands();
+        if (commands == null || commands.isEmpty()) {
+            return "命令列表不能为空";
+        }
+        if (commands.size() > config.getMaxCommands()) {
+            return "命令数超过上限（" + config.getMaxCommands() + "）";
+        }
+        return null;
+    }
+
+    private static void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (Exception e) {
+            // 客户端已断开或连接已超时
+        }
+    }
+
+    /**
+     * 一次批量执行：顺序执行在调用线程中逐条进行，并行执行提交到终端线程池
+     */
+    private class BatchRun {
+        private final List<CommandRequest> commands;
+        private final boolean parallel;
+        private final boolean stopOnError;
+        private final int concurrency;
+        private final BiConsumer<Integer, CommandResponse> onResult;
+        // 正在运行的命令，key: 命令序号
+        private final Map<Integer, RunningCommand> running = new ConcurrentHashMap<>();
+        private volatile boolean failed = false;
+        private volatile boolean cancelled = false;
+
+        BatchRun(BatchCommandRequest request, BiConsumer<Integer, CommandResponse> onResult) {
+            this.commands = request.getCommands();
+            this.parallel = Boolean.TRUE.equals(request.getParallel());
+            this.stopOnError = Boolean.TRUE.equals(request.getStopOnError());
+            int requested = request.getMaxConcurrency() != null && request.getMaxConcurrency() > 0
+                    ? request.getMaxConcurrency() : config.getMaxConcurrency();
+            this.concurrency = Math.max(1, Math.min(requested, config.getMaxConcurrency()));
+            this.onResult = onResult;
+        }
+
+        /**
+         * 取消批量执行：先置标记再结束已登记的命令，与runOne中先登记再检查标记配合，不会漏掉刚启动的命令
+         */
+        void cancel() {
+            cancelled = true;
+            running.values().forEach(command -> commandExecutionRegistry.cancel(command.getId()));
+        }
+
+        void execute() {
+            if (parallel) {
+                executeParallel();
+            } else {
+                for (int i = 0; i < commands.size(); i++) {
+                    runOne(i);
+                }
+            }
+        }
+
+        private void executeParallel() {
+            Semaphore permits = new Semaphore(concurrency);
+            CountDownLatch done = new CountDownLatch(commands.size());
+            try {
+                for (int i = 0; i < commands.size(); i++) {
+                    int index = i;
+                    permits.acquire();
+                    try {
+                        terminalExecutors.getExecutor().execute(() -> {
+                            try {
+                                runOne(index);
+                            } finally {
+                                permits.release();
+                                done.countDown();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        permits.release();
+                        complete(index, new CommandResponse(false, null, "服务繁忙，命令未执行", null, null, null));
+                        done.countDown();
+                    }
+                }
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+
+        private void runOne(int index) {
+            if (cancelled) {
+                complete(index, new CommandResponse(false, null, "批量执行已取消，命令未执行", null, null, null));
+                return;
+            }
+            if (stopOnError && failed) {
+                complete(index, new CommandResponse(false, null, "已有命令执行失败，命令未执行", null, null, null));
+                return;
+            }
+            CommandResponse result;
+            try {
+                result = commandExecutionService.executeCommand(commands.get(index).getCommand(), command -> {
+                    running.put(index, command);
+                    if (cancelled) {
+                        commandExecutionRegistry.cancel(command.getId());
+                    }
+                });
+            } finally {
+                running.remove(index);
+            }
+            complete(index, result);
+        }
+
+        private void complete(int index, CommandResponse result) {
+            if (!Boolean.TRUE.equals(result.getSuccess())) {
+                failed = true;
+            }
+            onResult.accept(index, result);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.util.ProcessTrees;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className CommandExecutionRegistry.java
+ * @description 运行中命令登记表
+ * 每条单次命令执行期间登记一个ID，可通过ID取消；取消时结束整棵进程树
+ * @date 2026年10月17日
+ */
+@Component
+public class CommandExecutionRegistry {
+
+    /**
+     * 命令执行方式
+     */
+    public enum Mode {
+        /** 等待结束后返回全部输出 */
+        BUFFERED,
+        /** 分块传输的纯文本输出 */
+        STREAM,
+        /** SSE事件流 */
+        SSE
+    }
+
+    private final Map<String, RunningCommand> commands = new ConcurrentHashMap<>();
+    private final Counter cancelledCounter;
+
+    public CommandExecutionRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("terminal.commands.running", commands, Map::size)
+                .description("运行中的单次命令数")
+                .register(meterRegistry);
+        this.cancelledCounter = Counter.builder("terminal.commands.cancelled")
+                .description("被取消（主动取消、超时或客户端断开）的命令数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 登记一条命令，进程启动后再通过 {@link RunningCommand#attach(Process)} 关联
+     */
+    public RunningCommand register(String command, Mode mode) {
+        RunningCommand running = new RunningCommand(UUID.randomUUID().toString(), command, mode);
+        commands.put(running.getId(), running);
+        return running;
+    }
+
+    /**
+     * 命令正常结束后移除登记
+     */
+    public void unregister(RunningCommand running) {
+        commands.remove(running.getId(), running);
+    }
+
+    /**
+     * 取消命令并结束其进程树
+     * @return 命令不存在或已结束时返回false
+     */
+    public boolean cancel(String commandId) {
+        RunningCommand running = commands.remove(commandId);
+        if (running == null) {
+            return false;
+        }
+        if (running.cancel()) {
+            cancelledCounter.increment();
+        }
+        return true;
+    }
+
+    public Collection<RunningCommand> getCommands() {
+        return commands.values();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (String commandId : commands.keySet()) {
+            cancel(commandId);
+        }
+    }
+
+    /**
+     * 运行中的命令
+     */
+    public static class RunningCommand {
+        private final String id;
+        private final String command;
+        private final Mode mode;
+        private final long startTime = System.currentTimeMillis();
+        private Process process;
+        private boolean cancelled = false;
+
+        RunningCommand(String id, String command, Mode mode) {
+            this.id = id;
+            this.command = command;
+            this.mode = mode;
+        }
+
+        /**
+         * 关联已启动的进程；登记后、启动前已被取消时立即结束进程
+         */
+        public synchronized void attach(Process process) {
+            this.process = process;
+            if (cancelled) {
+                ProcessTrees.destroyForcibly(process);
+            }
+        }
+
+        /**
+         * @return 本次调用确实结束了仍在运行的命令时返回true
+         */
+        synchronized boolean cancel() {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            if (process == null) {
+                return true;
+            }
+            boolean alive = process.isAlive();
+            ProcessTrees.destroyForcibly(process);
+            return alive;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public synchronized Long getPid() {
+            return process != null ? process.pid() : null;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import com.jeckchen.demo.dto.CommandResponse;
+import com.jeckchen.demo.handler.TerminalOutputAggregator;
+import com.jeckchen.demo.service.CommandExecutionRegistry.Mode;
+import com.jeckchen.demo.service.CommandExecutionRegistry.RunningCommand;
+import com.jeckchen.demo.util.ProcessTrees;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className CommandExecutionService.java
+ * @description 单次命令执行
+ * 进程运行期间持续读取输出，避免管道写满后命令阻塞；
+ * 缓冲模式只保留上限以内的输出，流式模式边读边写给客户端，内存占用与输出大小无关；
+ * SSE模式按大小和时间把多行合并为一个事件，长时间无输出时发送保活注释。
+ * 执行期间命令登记在 {@link CommandExecutionRegistry} 中，超时、取消或客户端断开时结束整棵进程树
+ * @date 2026年10月17日
+ */
+@Component
+public class CommandExecutionService {
+
+    // 进程退出后等待输出读完的时间，后台子进程仍持有管道时不再等待
+    private static final long DRAIN_GRACE_MILLIS = 2000;
+
+    private final TerminalProperties.Command config;
+    private final TerminalProperties.Stream streamConfig;
+    private final TerminalExecutors terminalExecutors;
+    private final ShellProcessPool shellProcessPool;
+    private final CommandExecutionRegistry commandExecutionRegistry;
+
+    public CommandExecutionService(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors,
+                                   ShellProcessPool shellProcessPool, CommandExecutionRegistry commandExecutionRegistry) {
+        this.config = terminalProperties.getCommand();
+        this.streamConfig = terminalProperties.getStream();
+        this.terminalExecutors = terminalExecutors;
+        this.shellProcessPool = shellProcessPool;
+        this.commandExecutionRegistry = commandExecutionRegistry;
+    }
+
+    /**
+     * 执行命令并转换为接口响应，命令为空、超时、被取消或出错时返回失败响应
+     */
+    public CommandResponse executeCommand(String command) {
+        return executeCommand(command, running -> { });
+    }
+
+    /**
+     * 执行命令并转换为接口响应，命令登记后回调onRegister，调用方可据此取消命令
+     */
+    public CommandResponse executeCommand(String command, Consumer<RunningCommand> onRegister) {
+        if (command == null || command.trim().isEmpty()) {
+            return new CommandResponse(false, null, "命令不能为空", null, null, null);
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            CommandResult result = execute(command, onRegister);
+            long executionTime = System.currentTimeMillis() - startTime;
+
+            if (result.isCancelled()) {
+                return new CommandResponse(false, result.getOutput(), "命令已被取消",
+                        null, executionTime, result.isTruncated());
+            }
+            if (result.isTimedOut()) {
+                return new CommandResponse(false, result.getOutput(),
+                        "命令执行超时（" + config.getTimeoutSeconds() + "秒）",
+                        null, executionTime, result.isTruncated());
+            }
+            int exitCode = result.getExitCode();
+            return new CommandResponse(exitCode == 0, result.getOutput(), null, exitCode, executionTime, result.isTruncated());
+
+        } catch (Exception e) {
+            return new CommandResponse(false, null, "执行命令时发生错误: " + e.getMessage(), null, null, null);
+        }
+    }
+
+    /**
+     * 执行命令并收集输出，超出上限的部分读取后丢弃
+     */
+    public CommandResult execute(String command) throws IOException, InterruptedException {
+        return execute(command, running -> { });
+    }
+
+    private CommandResult execute(String command, Consumer<RunningCommand> onRegister)
+            throws IOException, InterruptedException {
+        RunningCommand running = commandExecutionRegistry.register(command, Mode.BUFFERED);
+        try {
+            onRegister.accept(running);
+            Process process = shellProcessPool.startCommand(command);
+            running.attach(process);
+            CappedOutput output = new CappedOutput(config.getMaxOutputBytes());
+            Future<?> drain;
+            try {
+                drain = terminalExecutors.getExecutor().submit(() -> copy(process.getInputStream(), output));
+            } catch (RuntimeException e) {
+                ProcessTrees.destroyForcibly(process);
+                throw e;
+            }
+
+            boolean finished = process.waitFor(config.getTimeoutSeconds(), TimeUnit.SECONDS);
+            if (!finished) {
+                ProcessTrees.destroyForcibly(process);
+            }
+            try {
+                drain.get(DRAIN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 后台子进程继承了管道，不再等待；读取任务在管道关闭后自行结束，缓冲区有上限
+            } catch (ExecutionException e) {
+                // 进程被强制结束时读取可能出错，保留已读到的输出
+            }
+            Integer exitCode = finished ? process.exitValue() : null;
+            return new CommandResult(output.toText(), exitCode, !finished, running.isCancelled(),
+                    output.isTruncated());
+        } finally {
+            commandExecutionRegistry.unregister(running);
+        }
+    }
+
+    /**
+     * 执行命令并把输出直接写入out，超时后结束进程
+     * 客户端断开导致写入失败时同样结束进程
+     */
+    public void stream(String command, OutputStream out) throws IOException {
+        RunningCommand running = commandExecutionRegistry.register(command, Mode.STREAM);
+        Process process;
+        try {
+            process = shellProcessPool.startCommand(command);
+        } catch (IOException | RuntimeException e) {
+            commandExecutionRegistry.unregister(running);
+            throw e;
+        }
+        running.attach(process);
+        ScheduledFuture<?> timeout = terminalExecutors.getScheduler()
+                .schedule(() -> ProcessTrees.destroyForcibly(process), config.getTimeoutSeconds(), TimeUnit.SECONDS);
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+                // 每次读到数据立即发送，响应以chunked方式传输
+                out.flush();
+            }
+        } finally {
+            timeout.cancel(false);
+            commandExecutionRegistry.unregister(running);
+            if (process.isAlive()) {
+                ProcessTrees.destroyForcibly(process);
+            }
+        }
+    }
+
+    /**
+     * 以SSE事件流执行命令：start、若干output（每个事件包含一批输出行）、end、cancelled或error
+     * start事件的id为命令ID，可用于取消，取消后发送cancelled事件并结束连接；连接超时、出错或客户端断开时自动取消命令
+     * 命令在终端线程池中执行，不占用公共ForkJoinPool
+     * @param timeoutSeconds 连接超时时间，为null时使用默认值，不超过配置的上限
+     */
+    public SseEmitter streamEvents(String command, Integer timeoutSeconds) {
+        SseEmitter emitter = createEmitter(timeoutSeconds);
+        RunningCommand running = commandExecutionRegistry.register(command, Mode.SSE);
+        // 正常结束时命令已先行移除登记，此处取消不会生效
+        emitter.onTimeout(() -> commandExecutionRegistry.cancel(running.getId()));
+        emitter.onError(e -> commandExecutionRegistry.cancel(running.getId()));
+        emitter.onCompletion(() -> commandExecutionRegistry.cancel(running.getId()));
+        try {
+            terminalExecutors.getExecutor().execute(() -> runStream(running, emitter));
+        } catch (RejectedExecutionException e) {
+            commandExecutionRegistry.unregister(running);
+            EventSender sender = new EventSender(emitter);
+            sender.send(SseEmitter.event().name("error").data("服务繁忙，请稍后重试"));
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * 创建SSE连接，超时时间为null时使用默认值，不超过配置的上限
+     */
+    public SseEmitter createEmitter(Integer timeoutSeconds) {
+        long timeout = timeoutSeconds != null && timeoutSeconds > 0
+                ? Math.min(timeoutSeconds, streamConfig.getMaxTimeoutSeconds())
+                : streamConfig.getTimeoutSeconds();
+        return new SseEmitter(timeout * 1000L);
+    }
+
+    private void runStream(RunningCommand running, SseEmitter emitter) {
+        String command = running.getCommand();
+        EventSender sender = new EventSender(emitter);
+        TerminalOutputAggregator batch = TerminalOutputAggregator.text(streamConfig.getMaxBatchSize(),
+                streamConfig.getFlushDelayMillis(), terminalExecutors.getScheduler(), terminalExecutors.getExecutor(),
+                text -> sender.send(SseEmitter.event().name("output").data(stripTrailingNewline(text))));
+        long keepAlive = streamConfig.getKeepAliveMillis();
+        // 发送可能阻塞，保活从调度线程转到线程池执行
+        ScheduledFuture<?> heartbeat = terminalExecutors.getScheduler().scheduleAtFixedRate(() -> {
+            try {
+                terminalExecutors.getExecutor().execute(() -> sender.keepAlive(keepAlive));
+            } catch (RejectedExecutionException e) {
+                // 线程池繁忙时跳过本次保活
+            }
+        }, keepAlive, keepAlive, TimeUnit.MILLISECONDS);
+        Process process = null;
+        try {
+            process = shellProcessPool.startCommand(command);
+            running.attach(process);
+            sender.send(SseEmitter.event().name("start").id(running.getId()).data("命令开始执行: " + command));
+            
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (!sender.isFailed() && (line = reader.readLine()) != null) {
+                    batch.append(line + "\n");
+                }
+            }
+            batch.flush();
+            if (sender.isFailed()) {
+                return;
+            }
+            
+            int exitCode = process.waitFor();
+            commandExecutionRegistry.unregister(running);
+            if (running.isCancelled()) {
+                Map<String, Object> cancelData = new HashMap<>();
+                cancelData.put("exitCode", exitCode);
+                cancelData.put("cancelled", true);
+                sender.send(SseEmitter.event().name("cancelled").data(cancelData));
+                emitter.complete();
+                return;
+            }
+            Map<String, Object> endData = new HashMap<>();
+            endData.put("exitCode", exitCode);
+            endData.put("success", exitCode == 0);
+            sender.send(SseEmitter.event().name("end").data(endData));
+            emitter.complete();
+        } catch (Exception e) {
+            sender.send(SseEmitter.event().name("error").data("执行命令时发生错误: " + e.getMessage()));
+            emitter.completeWithError(e);
+        } finally {
+            heartbeat.cancel(false);
+            batch.close();
+            commandExecutionRegistry.unregister(running);
+            if (process != null && process.isAlive()) {
+                ProcessTrees.destroyForcibly(process);
+            }
+        }
+    }
+
+    private static String stripTrailingNewline(String text) {
+        return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private static void copy(InputStream in, CappedOutput output) {
+        byte[] buffer = new byte[8192];
+        try {
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            // 读取端被关闭，正常结束
+        }
+    }
+
+    /**
+     * SSE事件发送：记录最后发送时间供保活判断，连接断开或超时后不再发送
+     */
+    private static class EventSender {
+        private final SseEmitter emitter;
+        private volatile long lastSendTime = System.currentTimeMillis();
+        private volatile boolean failed = false;
+
+        EventSender(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void send(SseEmitter.SseEventBuilder event) {
+            if (failed) {
+                return;
+            }
+            try {
+                emitter.send(event);
+                lastSendTime = System.currentTimeMillis();
+            } catch (Exception e) {
+                // 客户端已断开或连接已超时
+                failed = true;
+            }
+        }
+
+        /**
+         * 距上次发送超过间隔时发送一条注释，防止代理因空闲断开连接
+         */
+        void keepAlive(long intervalMillis) {
+            if (System.currentTimeMillis() - lastSendTime >= intervalMillis) {
+                send(SseEmitter.event().comment("keep-alive"));
+            }
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+    }
+
+    /**
+     * 只保留前maxBytes字节的输出缓冲区
+     */
+    private static class CappedOutput {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final long maxBytes;
+        private boolean truncated = false;
+
+        CappedOutput(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void write(byte[] data, int offset, int length) {
+            long room = maxBytes - buffer.size();
+            if (length > room) {
+                truncated = true;
+                length = (int) Math.max(room, 0);
+            }
+            buffer.write(data, offset, length);
+        }
+
+        synchronized String toText() {
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * 单次命令执行结果
+     */
+    public static class CommandResult {
+        private final String output;
+        private final Integer exitCode;
+        private final boolean timedOut;
+        private final boolean cancelled;
+        private final boolean truncated;
+
+        public CommandResult(String output, Integer exitCode, boolean timedOut, boolean cancelled, boolean truncated) {
+            this.output = output;
+            this.exitCode = exitCode;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+            this.truncated = truncated;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public Integer getExitCode() {
+            return exitCode;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.SystemMetricsProperties;
+import com.jeckchen.demo.dto.HostMetrics;
+import com.jeckchen.demo.util.ProcFileReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className HostMetricsCollector.java
+ * @description 主机指标采集
+ * Linux上随系统指标采样线程读取/proc/stat、/proc/loadavg、/proc/meminfo、/proc/diskstats和/proc/net/dev，
+ * 文件保持打开、内容读入复用的缓冲区，计数器存放在预先分配的基本类型数组中，每次采样不产生垃圾；
+ * 只有定期重新发现CPU核、磁盘和网络接口时才会分配。请求时才把数组转换成DTO。
+ * 其它平台没有/proc，返回JVM提供的整机CPU、负载和内存数据
+ * @date 2026年10月17日
+ */
+@Component
+public class HostMetricsCollector {
+
+    private static final byte[] CPU = "cpu".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MEM_TOTAL = "MemTotal".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MEM_AVAILABLE = "MemAvailable".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWAP_TOTAL = "SwapTotal".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWAP_FREE = "SwapFree".getBytes(StandardCharsets.US_ASCII);
+    private static final int SECTOR_SIZE = 512;
+
+    // 磁盘计数器：读字节、写字节、读次数、写次数；网络计数器：收字节、发字节、收包数、发包数
+    private static final int COUNTERS = 4;
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final long deviceRefreshMillis;
+    private final boolean procAvailable;
+    private final ProcFileReader stat = new ProcFileReader("/proc/stat", 8 * 1024);
+    private final ProcFileReader loadavg = new ProcFileReader("/proc/loadavg", 256);
+    private final ProcFileReader meminfo = new ProcFileReader("/proc/meminfo", 4 * 1024);
+    private final ProcFileReader diskstats = new ProcFileReader("/proc/diskstats", 8 * 1024);
+    private final ProcFileReader netdev = new ProcFileReader("/proc/net/dev", 4 * 1024);
+
+    // 以下字段只在采样线程中写入，读取时与写入同步
+    private long sampledAt;
+    private long sampledAtNanos;
+    private long devicesRefreshedAt;
+    // 下标0为整机，i+1为第i个核
+    private long[] cpuTotal = new long[0];
+    private long[] cpuIdle = new long[0];
+    private double[] cpuLoads = new double[0];
+    private final double[] loadAverage = {-1, -1, -1};
+    private long memoryTotal = -1;
+    private long memoryAvailable = -1;
+    private long swapTotal = -1;
+    private long swapFree = -1;
+    private CounterGroup disks = new CounterGroup(Collections.emptyList());
+    private CounterGroup networkInterfaces = new CounterGroup(Collections.emptyList());
+
+    public HostMetricsCollector(SystemMetricsProperties properties, SystemMetricsSampler sampler) {
+        SystemMetricsProperties.Host config = properties.getHost();
+        this.deviceRefreshMillis = config.getDeviceRefreshMillis();
+        this.procAvailable = config.isEnabled() && new File("/proc/stat").canRead();
+        if (procAvailable) {
+            sample();
+            sampler.addListener(sample -> sample());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            stat.close();
+            loadavg.close();
+            meminfo.close();
+            diskstats.close();
+            netdev.close();
+        }
+    }
+
+    /**
+     * 最近一次采样的主机指标；不支持/proc时即时读取JVM提供的数据
+     */
+    public HostMetrics getHostMetrics() {
+        if (!procAvailable) {
+            return fromMXBean();
+        }
+        synchronized (this) {
+            double[] cores = cpuLoads.length > 1 ? Arrays.copyOfRange(cpuLoads, 1, cpuLoads.length) : new double[0];
+            List<HostMetrics.DiskIo> diskList = new ArrayList<>();
+            for (int i = 0; i < disks.names.length; i++) {
+                int base = i * COUNTERS;
+                diskList.add(new HostMetrics.DiskIo(disks.names[i], disks.rates[base], disks.rates[base + 1],
+                        disks.rates[base + 2], disks.rates[base + 3]));
+            }
+            List<HostMetrics.NetworkIo> networkList = new ArrayList<>();
+            for (int i = 0; i < networkInterfaces.names.length; i++) {
+                int base = i * COUNTERS;
+                networkList.add(new HostMetrics.NetworkIo(networkInterfaces.names[i], networkInterfaces.rates[base],
+                        networkInterfaces.rates[base + 1], networkInterfaces.rates[base + 2],
+                        networkInterfaces.rates[base + 3]));
+            }
+            return new HostMetrics("proc", sampledAt, cpuLoads.length > 0 ? cpuLoads[0] : -1, cores,
+                    loadAverage.clone(), memoryTotal, memoryAvailable, swapTotal, swapFree, diskList, networkList);
+        }
+    }
+
+    private HostMetrics fromMXBean() {
+        double cpuLoad = -1;
+        long total = -1;
+        long free = -1;
+        long swap = -1;
+        long swapAvailable = -1;
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean bean = (com.sun.management.OperatingSystemMXBean) osBean;
+            cpuLoad = bean.getCpuLoad();
+            total = bean.getTotalMemorySize();
+            free = bean.getFreeMemorySize();
+            swap = bean.getTotalSwapSpaceSize();
+            swapAvailable = bean.getFreeSwapSpaceSize();
+        }
+        // Windows上没有平均负载，返回负数
+        double load = osBean.getSystemLoadAverage();
+        return new HostMetrics("mxbean", System.currentTimeMillis(), cpuLoad, new double[0],
+                new double[]{load >= 0 ? load : -1, -1, -1}, total, free, swap, swapAvailable,
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * 采样一次，在系统指标采样线程中执行
+     */
+    private synchronized void sample() {
+        long now = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        if (now - devicesRefreshedAt >= deviceRefreshMillis) {
+            refreshDevices();
+            devicesRefreshedAt = now;
+        }
+        double seconds = sampledAtNanos == 0 ? 0 : (nanos - sampledAtNanos) / 1e9;
+        sampleCpu();
+        sampleLoadAverage();
+        sampleMemory();
+        sampleDisks(seconds);
+        sampleNetwork(seconds);
+        sampledAt = now;
+        sampledAtNanos = nanos;
+    }
+
+    private void sampleCpu() {
+        if (!stat.load()) {
+            return;
+        }
+        // cpu行在文件开头，之后的行不再需要
+        while (stat.nextLine() && stat.lineStartsWith(CPU)) {
+            stat.nextToken();
+            // 整机为"cpu"，后缀解析失败得到-1，下标为0；"cpuN"的下标为N+1
+            int index = (int) stat.tokenSuffixAsLong(CPU.length) + 1;
+            if (index == 0 && !stat.tokenEquals(CPU) || index >= cpuTotal.length) {
+                continue;
+            }
+            // user nice system idle iowait irq softirq steal；guest已计入user，不再累加
+            long total = 0;
+            long idle = 0;
+            for (int field = 0; field < 8; field++) {
+                long value = stat.nextLong();
+                if (value < 0) {
+                    break;
+                }
+                total += value;
+                if (field == 3 || field == 4) {
+                    idle += value;
+                }
+            }
+            long totalDelta = total - cpuTotal[index];
+            long idleDelta = idle - cpuIdle[index];
+            if (cpuTotal[index] > 0 && totalDelta > 0) {
+                cpuLoads[index] = Math.min(1.0, Math.max(0.0, 1.0 - (double) idleDelta / totalDelta));
+            }
+            cpuTotal[index] = total;
+            cpuIdle[index] = idle;
+        }
+    }
+
+    private void sampleLoadAverage() {
+        if (!loadavg.load() || !loadavg.nextLine()) {
+            return;
+        }
+        for (int i = 0; i < loadAverage.length; i++) {
+            loadAverage[i] = loadavg.nextDecimal();
+        }
+    }
+
+    private void sampleMemory() {
+        if (!meminfo.load()) {
+            return;
+        }
+        int found = 0;
+        while (found < 4 && meminfo.nextLine()) {
+            meminfo.nextToken();
+            if (meminfo.tokenEquals(MEM_TOTAL)) {
+                memoryTotal = meminfo.nextLong() * 1024;
+            } else if (meminfo.tokenEquals(MEM_AVAILABLE)) {
+                memoryAvailable = meminfo.nextLong() * 1024;
+            } else if (meminfo.tokenEquals(SWAP_TOTAL)) {
+                swapTotal = meminfo.nextLong() * 1024;
+            } else if (meminfo.tokenEquals(SWAP_FREE)) {
+                swapFree = meminfo.nextLong() * 1024;
+            } else {
+                continue;
+            }
+            found++;
+        }
+    }
+
+    /**
+     * 每行：主设备号 次设备号 设备名 读完成次数 读合并次数 读扇区数 读耗时 写完成次数 写合并次数 写扇区数 ...
+     */
+    private void sampleDisks(double seconds) {
+        if (disks.names.length == 0 || !diskstats.load()) {
+            return;
+        }
+        long[] current = disks.current;
+        while (diskstats.nextLine()) {
+            diskstats.skipTokens(2);
+            diskstats.nextToken();
+            int device = disks.indexOf(diskstats);
+            if (device < 0) {
+                continue;
+            }
+            long reads = diskstats.nextLong();
+            diskstats.skipTokens(1);
+            long sectorsRead = diskstats.nextLong();
+            diskstats.skipTokens(1);
+            long writes = diskstats.nextLong();
+            diskstats.skipTokens(1);
+            long sectorsWritten = diskstats.nextLong();
+            int base = device * COUNTERS;
+            current[base] = sectorsRead * SECTOR_SIZE;
+            current[base + 1] = sectorsWritten * SECTOR_SIZE;
+            current[base + 2] = reads;
+            current[base + 3] = writes;
+        }
+        disks.computeRates(seconds);
+    }
+
+    /**
+     * 前两行为表头；每行：接口名: 收字节 收包 errs drop fifo frame compressed multicast 发字节 发包 ...
+     */
+    private void sampleNetwork(double seconds) {
+        if (networkInterfaces.names.length == 0 || !netdev.load()) {
+            return;
+        }
+        long[] current = networkInterfaces.current;
+        netdev.nextLine();
+        netdev.nextLine();
+        while (netdev.nextLine()) {
+            netdev.nextToken();
+            int device = networkInterfaces.indexOf(netdev);
+            if (device < 0) {
+                continue;
+            }
+            long receiveBytes = netdev.nextLong();
+            long receivePackets = netdev.nextLong();
+            netdev.skipTokens(6);
+            long transmitBytes = netdev.nextLong();
+            long transmitPackets = netdev.nextLong();
+            int base = device * COUNTERS;
+            current[base] = receiveBytes;
+            current[base + 1] = transmitBytes;
+            current[base + 2] = receivePackets;
+            current[base + 3] = transmitPackets;
+        }
+        networkInterfaces.computeRates(seconds);
+    }
+
+    /**
+     * 重新发现CPU核、磁盘和网络接口，设备没有变化时保留原有计数器
+     */
+    private void refreshDevices() {
+        int cpuCount = 0;
+        if (stat.load()) {
+            while (stat.nextLine() && stat.lineStartsWith(CPU)) {
+                stat.nextToken();
+                long core = stat.tokenSuffixAsLong(CPU.length);
+                cpuCount = Math.max(cpuCount, (int) core + 2);
+            }
+        }
+        if (cpuCount != cpuTotal.length) {
+            cpuTotal = new long[cpuCount];
+            cpuIdle = new long[cpuCount];
+            cpuLoads = new double[cpuCount];
+            Arrays.fill(cpuLoads, -1);
+        }
+
+        // 只统计整块磁盘，分区、loop和ram设备的读写已计入所属设备或没有意义
+        File sysBlock = new File("/sys/block");
+        boolean hasSysBlock = sysBlock.isDirectory();
+        List<String> diskNames = new ArrayList<>();
+        if (diskstats.load()) {
+            while (diskstats.nextLine()) {
+                diskstats.skipTokens(2);
+                if (!diskstats.nextToken()) {
+                    continue;
+                }
+                String name = diskstats.tokenString();
+                if (name.startsWith("loop") || name.startsWith("ram")) {
+                    continue;
+                }
+                if (!hasSysBlock || new File(sysBlock, name).exists()) {
+                    diskNames.add(name);
+                }
+            }
+        }
+        if (!disks.hasNames(diskNames)) {
+            disks = new CounterGroup(diskNames);
+        }
+
+        List<String> interfaceNames = new ArrayList<>();
+        if (netdev.load()) {
+            netdev.nextLine();
+            netdev.nextLine();
+            while (netdev.nextLine()) {
+                if (netdev.nextToken()) {
+                    String name = netdev.tokenString();
+                    if (!"lo".equals(name)) {
+                        interfaceNames.add(name);
+                    }
+                }
+            }
+        }
+        if (!networkInterfaces.hasNames(interfaceNames)) {
+            networkInterfaces = new CounterGroup(interfaceNames);
+        }
+    }
+
+    /**
+     * 一组设备的累计计数器和速率，每个设备COUNTERS个计数器，按设备顺序平铺在数组中；包内可见供单元测试使用
+     */
+    static final class CounterGroup {
+        final String[] names;
+        private final byte[][] nameBytes;
+        final long[] current;
+        private final long[] previous;
+        final double[] rates;
+        private boolean hasPrevious;
+
+        CounterGroup(List<String> names) {
+            this.names = names.toArray(new String[0]);
+            this.nameBytes = new byte[this.names.length][];
+            for (int i = 0; i < this.names.length; i++) {
+                nameBytes[i] = this.names[i].getBytes(StandardCharsets.US_ASCII);
+            }
+            this.current = new long[this.names.length * COUNTERS];
+            this.previous = new long[this.names.length * COUNTERS];
+            this.rates = new double[this.names.length * COUNTERS];
+        }
+
+        boolean hasNames(List<String> other) {
+            return Arrays.asList(names).equals(other);
+        }
+
+        /**
+         * 设备数量很少，按字节逐个比较，不为设备名创建字符串
+         */
+        int indexOf(ProcFileReader reader) {
+            for (int i = 0; i < nameBytes.length; i++) {
+                if (reader.tokenEquals(nameBytes[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 用本次与上次的差值计算每秒速率；计数器回绕或设备重置时速率记为0
+         */
+        void computeRates(double seconds) {
+            for (int i = 0; i < current.length; i++) {
+                if (hasPrevious && seconds > 0) {
+                    long delta = current[i] - previous[i];
+                    rates[i] = delta > 0 ? delta / seconds : 0;
+                }
+                previous[i] = current[i];
+            }
+            hasPrevious = true;
+        }
+    }
+}
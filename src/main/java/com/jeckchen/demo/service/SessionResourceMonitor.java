@@ -0,0 +1,413 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import com.jeckchen.demo.dto.SessionResourceUsage;
+import com.jeckchen.demo.util.ProcFileReader;
+import com.jeckchen.demo.util.ProcessTrees;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SessionResourceMonitor.java
+ * @description 会话资源统计
+ * REST持久化会话、WebSocket本地终端和SSH主机为本机时的WebSocket终端登记自己的shell进程，统一按固定间隔采样整棵进程树的
+ * CPU时间、常驻内存、打开的文件数和存储读写量。Linux上每次采样只扫描一遍/proc/<pid>/stat，
+ * 按父进程号把所有进程归到所属会话，开销与会话数无关；只对属于会话的进程再读取fd和io。
+ * 其它平台用ProcessHandle.descendants()统计进程数和CPU时间
+ * @date 2026年10月17日
+ */
+@Component
+public class SessionResourceMonitor {
+
+    private static final boolean PROC_AVAILABLE = new File("/proc/self/stat").canRead();
+    // /proc中的CPU时间以USER_HZ为单位，Linux各架构上均为100
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final byte[] READ_BYTES = "read_bytes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRITE_BYTES = "write_bytes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KERNEL_PAGE_SIZE = "KernelPageSize".getBytes(StandardCharsets.US_ASCII);
+    private static final int UNRESOLVED = -2;
+    private static final int NO_OWNER = -1;
+
+    private final TerminalProperties.Accounting config;
+    private final TerminalExecutors terminalExecutors;
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final AtomicBoolean sampling = new AtomicBoolean();
+    private final long pageSize;
+
+    // 以下字段只在采样任务中使用，同一时刻只有一个采样任务
+    private final ProcFileReader reader = new ProcFileReader(4 * 1024);
+    private long[] pids = new long[256];
+    private long[] parentPids = new long[256];
+    private long[] cpuTicks = new long[256];
+    private long[] rssPages = new long[256];
+
+    public SessionResourceMonitor(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors) {
+        this.config = terminalProperties.getAccounting();
+        this.terminalExecutors = terminalExecutors;
+        this.pageSize = PROC_AVAILABLE ? detectPageSize() : -1;
+        long interval = config.getSampleIntervalMillis();
+        if (interval > 0) {
+            terminalExecutors.getScheduler().scheduleWithFixedDelay(this::scheduleSample,
+                    interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 登记会话的shell进程，之后按采样间隔统计它的整棵进程树
+     * @param closer 通过 {@link #kill(String)} 结束会话时调用，负责注销会话
+     */
+    public void track(String sessionId, String kind, ProcessHandle root, Runnable closer) {
+        tracked.put(sessionId, new Tracked(sessionId, kind, root, closer));
+    }
+
+    public void untrack(String sessionId) {
+        tracked.remove(sessionId);
+    }
+
+    /**
+     * 会话最近一次的资源统计，未登记或尚未采样时为null
+     */
+    public SessionResourceUsage getUsage(String sessionId) {
+        Tracked entry = tracked.get(sessionId);
+        return entry == null ? null : entry.usage;
+    }
+
+    /**
+     * 按指定资源从高到低排列的会话
+     * @param sort cpu、memory、io或files
+     * @throws IllegalArgumentException 排序字段无效
+     */
+    public List<SessionResourceUsage> top(int limit, String sort) {
+        Comparator<SessionResourceUsage> order;
+        switch (sort) {
+            case "cpu":
+                order = Comparator.comparingDouble(SessionResourceUsage::getCpuLoad);
+                break;
+            case "memory":
+                order = Comparator.comparingLong(SessionResourceUsage::getRssBytes);
+                break;
+            case "io":
+                order = Comparator.comparingDouble(usage -> usage.getReadBytesPerSecond() + usage.getWriteBytesPerSecond());
+                break;
+            case "files":
+                order = Comparator.comparingInt(SessionResourceUsage::getOpenFiles);
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的排序字段: " + sort);
+        }
+        List<SessionResourceUsage> result = new ArrayList<>();
+        for (Tracked entry : tracked.values()) {
+            if (entry.usage != null) {
+                result.add(entry.usage);
+            }
+        }
+        result.sort(order.reversed());
+        int max = Math.max(0, Math.min(limit, config.getMaxTopSessions()));
+        return result.size() > max ? new ArrayList<>(result.subList(0, max)) : result;
+    }
+
+    /**
+     * 强制结束会话的整棵进程树并关闭会话
+     * @return 会话未登记时为false
+     */
+    public boolean kill(String sessionId) {
+        Tracked entry = tracked.remove(sessionId);
+        if (entry == null) {
+            return false;
+        }
+        ProcessTrees.destroyForcibly(entry.root);
+        entry.closer.run();
+        return true;
+    }
+
+    /**
+     * 调度线程只负责把采样提交到线程池，上一次采样未完成时跳过
+     */
+    private void scheduleSample() {
+        if (tracked.isEmpty() || !sampling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            terminalExecutors.getExecutor().execute(() -> {
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    System.err.println("会话资源统计失败: " + e.getMessage());
+                } finally {
+                    sampling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sampling.set(false);
+        }
+    }
+
+    private void sample() {
+        Tracked[] targets = tracked.values().toArray(new Tracked[0]);
+        for (Tracked target : targets) {
+            target.reset();
+        }
+        if (PROC_AVAILABLE) {
+            sampleProc(targets);
+        } else {
+            sampleProcessHandles(targets);
+        }
+        long now = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        for (Tracked target : targets) {
+            target.publish(now, nanos);
+        }
+    }
+
+    /**
+     * 扫描全部进程的stat得到父进程号，沿父进程链找到所属会话；只对会话内的进程读取fd和io
+     */
+    private void sampleProc(Tracked[] targets) {
+        String[] entries = new File("/proc").list();
+        if (entries == null) {
+            return;
+        }
+        int count = 0;
+        for (String entry : entries) {
+            if (entry.isEmpty() || !Character.isDigit(entry.charAt(0))) {
+                continue;
+            }
+            // 进程名可能含空格和括号，从最后一个右括号之后开始解析
+            if (!reader.load("/proc/" + entry + "/stat") || !reader.nextLine() || !reader.skipPastLast((byte) ')')) {
+                continue;
+            }
+            if (count == pids.length) {
+                grow();
+            }
+            reader.skipTokens(1);
+            long parentPid = reader.nextLong();
+            reader.skipTokens(9);
+            long ticks = 0;
+            // utime stime cutime cstime：子进程被树内进程回收后，其CPU时间转入父进程的cutime/cstime
+            for (int i = 0; i < 4; i++) {
+                ticks += Math.max(reader.nextLong(), 0);
+            }
+            reader.skipTokens(6);
+            pids[count] = Long.parseLong(entry);
+            parentPids[count] = parentPid;
+            cpuTicks[count] = ticks;
+            rssPages[count] = reader.nextLong();
+            count++;
+        }
+
+        Map<Long, Integer> indexByPid = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            indexByPid.put(pids[i], i);
+        }
+        Map<Long, Integer> targetByPid = new HashMap<>(targets.length * 2);
+        for (int i = 0; i < targets.length; i++) {
+            targetByPid.put(targets[i].root.pid(), i);
+        }
+        int[] owners = new int[count];
+        Arrays.fill(owners, UNRESOLVED);
+        int[] path = new int[count];
+        for (int i = 0; i < count; i++) {
+            int owner = resolveOwner(i, owners, path, indexByPid, targetByPid);
+            if (owner == NO_OWNER) {
+                continue;
+            }
+            Tracked target = targets[owner];
+            long pid = pids[i];
+            target.processCount++;
+            target.cpuMillis += cpuTicks[i] * 1000 / CLOCK_TICKS_PER_SECOND;
+            target.rssBytes = rssPages[i] >= 0 && target.rssBytes >= 0 ? target.rssBytes + rssPages[i] * pageSize : -1;
+            String[] fds = new File("/proc/" + pid + "/fd").list();
+            target.openFiles = fds != null && target.openFiles >= 0 ? target.openFiles + fds.length : -1;
+            readIo(pid, target);
+        }
+    }
+
+    /**
+     * 沿父进程链向上查找登记过的shell进程，途经的进程记住结果，每个进程只走一次
+     */
+    private int resolveOwner(int index, int[] owners, int[] path, Map<Long, Integer> indexByPid,
+                             Map<Long, Integer> targetByPid) {
+        int length = 0;
+        int current = index;
+        int owner;
+        while (true) {
+            if (owners[current] != UNRESOLVED) {
+                owner = owners[current];
+                break;
+            }
+            path[length++] = current;
+            Integer target = targetByPid.get(pids[current]);
+            if (target != null) {
+                owner = target;
+                break;
+            }
+            Integer parent = indexByPid.get(parentPids[current]);
+            if (parent == null || length == path.length) {
+                owner = NO_OWNER;
+                break;
+            }
+            current = parent;
+        }
+        for (int i = 0; i < length; i++) {
+            owners[path[i]] = owner;
+        }
+        return owner;
+    }
+
+    /**
+     * 读取/proc/<pid>/io中的存储读写字节数，只能读取本用户的进程，无权限时记为-1
+     */
+    private void readIo(long pid, Tracked target) {
+        if (target.readBytes < 0 || !reader.load("/proc/" + pid + "/io")) {
+            target.readBytes = -1;
+            target.writeBytes = -1;
+            return;
+        }
+        long read = -1;
+        long written = -1;
+        while (reader.nextLine() && (read < 0 || written < 0)) {
+            reader.nextToken();
+            if (reader.tokenEquals(READ_BYTES)) {
+                read = reader.nextLong();
+            } else if (reader.tokenEquals(WRITE_BYTES)) {
+                written = reader.nextLong();
+            }
+        }
+        if (read < 0 || written < 0) {
+            target.readBytes = -1;
+            target.writeBytes = -1;
+        } else {
+            target.readBytes += read;
+            target.writeBytes += written;
+        }
+    }
+
+    /**
+     * 没有/proc时只能得到进程数和CPU时间
+     */
+    private void sampleProcessHandles(Tracked[] targets) {
+        for (Tracked target : targets) {
+            target.rssBytes = -1;
+            target.openFiles = -1;
+            target.readBytes = -1;
+            target.writeBytes = -1;
+            if (!target.root.isAlive()) {
+                continue;
+            }
+            Stream.concat(Stream.of(target.root), target.root.descendants()).forEach(handle -> {
+                target.processCount++;
+                handle.info().totalCpuDuration().ifPresent(duration -> target.cpuMillis += duration.toMillis());
+            });
+        }
+    }
+
+    private void grow() {
+        int capacity = pids.length * 2;
+        pids = Arrays.copyOf(pids, capacity);
+        parentPids = Arrays.copyOf(parentPids, capacity);
+        cpuTicks = Arrays.copyOf(cpuTicks, capacity);
+        rssPages = Arrays.copyOf(rssPages, capacity);
+    }
+
+    /**
+     * 从本进程的smaps读取内核页大小，rss以页为单位
+     */
+    private static long detectPageSize() {
+        ProcFileReader smaps = new ProcFileReader(64 * 1024);
+        if (smaps.load("/proc/self/smaps")) {
+            while (smaps.nextLine()) {
+                if (smaps.lineStartsWith(KERNEL_PAGE_SIZE)) {
+                    smaps.nextToken();
+                    long kilobytes = smaps.nextLong();
+                    if (kilobytes > 0) {
+                        return kilobytes * 1024;
+                    }
+                }
+            }
+        }
+        return 4096;
+    }
+
+    /**
+     * 一个登记的会话：累计值在采样任务中逐个进程累加，完成后生成不可变的统计结果
+     */
+    private static final class Tracked {
+        final String sessionId;
+        final String kind;
+        final ProcessHandle root;
+        final Runnable closer;
+        volatile SessionResourceUsage usage;
+
+        // 本次采样的累计值，-1表示部分进程无法获取
+        int processCount;
+        long cpuMillis;
+        long rssBytes;
+        int openFiles;
+        long readBytes;
+        long writeBytes;
+
+        // 上一次采样的值，用于计算速率
+        private long previousNanos;
+        private long previousCpuMillis;
+        private long previousReadBytes;
+        private long previousWriteBytes;
+
+        Tracked(String sessionId, String kind, ProcessHandle root, Runnable closer) {
+            this.sessionId = sessionId;
+            this.kind = kind;
+            this.root = root;
+            this.closer = closer;
+        }
+
+        void reset() {
+            processCount = 0;
+            cpuMillis = 0;
+            rssBytes = 0;
+            openFiles = 0;
+            readBytes = 0;
+            writeBytes = 0;
+        }
+
+        /**
+         * 根据与上次采样的差值计算速率；进程退出后累计值可能变小，此时速率记为0
+         */
+        void publish(long now, long nanos) {
+            if (processCount == 0) {
+                return;
+            }
+            double cpuLoad = 0;
+            double readRate = 0;
+            double writeRate = 0;
+            if (previousNanos > 0) {
+                double seconds = (nanos - previousNanos) / 1e9;
+                cpuLoad = Math.max(0, cpuMillis - previousCpuMillis) / 1000.0 / seconds;
+                if (readBytes >= 0 && previousReadBytes >= 0) {
+                    readRate = Math.max(0, readBytes - previousReadBytes) / seconds;
+                    writeRate = Math.max(0, writeBytes - previousWriteBytes) / seconds;
+                }
+            }
+            previousNanos = nanos;
+            previousCpuMillis = cpuMillis;
+            previousReadBytes = readBytes;
+            previousWriteBytes = writeBytes;
+            usage = new SessionResourceUsage(sessionId, kind, root.pid(), processCount, cpuMillis, cpuLoad,
+                    rssBytes, openFiles, readBytes, writeBytes, readRate, writeRate, now);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ShellProcessPool.java
+ * @description 预热的shell进程池
+ * 提前启动好shell进程，请求到来时直接取用，避免在请求线程上等待fork/exec和shell初始化。
+ * 池中进程从未执行过命令，取出即是干净的shell；用过的进程不归还，由后台补充新进程。
+ * 超过最大存活时间的空闲进程会被回收替换
+ * @date 2026年10月17日
+ */
+@Component
+public class ShellProcessPool {
+
+    /**
+     * 池中shell的类型
+     */
+    public enum Kind {
+        /** 交互式shell，供持久化会话使用 */
+        SESSION,
+        /** 从stdin读取脚本执行一次后退出，供单次命令使用 */
+        COMMAND
+    }
+
+    private final TerminalProperties.Pool config;
+    private final TerminalExecutors terminalExecutors;
+    private final boolean windows = System.getProperty("os.name").toLowerCase().contains("win");
+    private final Map<Kind, ConcurrentLinkedDeque<PooledProcess>> idle = new EnumMap<>(Kind.class);
+    private final Map<Kind, AtomicBoolean> refilling = new EnumMap<>(Kind.class);
+    private final Map<Kind, Counter> hitCounters = new EnumMap<>(Kind.class);
+    private final Map<Kind, Counter> missCounters = new EnumMap<>(Kind.class);
+    private final Map<Kind, Timer> spawnTimers = new EnumMap<>(Kind.class);
+    private volatile boolean closed = false;
+
+    public ShellProcessPool(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors,
+                            MeterRegistry meterRegistry) {
+        this.config = terminalProperties.getPool();
+        this.terminalExecutors = terminalExecutors;
+        for (Kind kind : Kind.values()) {
+            ConcurrentLinkedDeque<PooledProcess> deque = new ConcurrentLinkedDeque<>();
+            idle.put(kind, deque);
+            refilling.put(kind, new AtomicBoolean());
+            String tag = kind.name().toLowerCase();
+            hitCounters.put(kind, Counter.builder("terminal.shell.pool.requests")
+                    .description("从预热池取shell的次数")
+                    .tags("kind", tag, "result", "hit")
+                    .register(meterRegistry));
+            missCounters.put(kind, Counter.builder("terminal.shell.pool.requests")
+                    .description("从预热池取shell的次数")
+                    .tags("kind", tag, "result", "miss")
+                    .register(meterRegistry));
+            spawnTimers.put(kind, Timer.builder("terminal.shell.pool.spawn")
+                    .description("启动shell进程的耗时")
+                    .tag("kind", tag)
+                    .register(meterRegistry));
+            Gauge.builder("terminal.shell.pool.idle", deque, ConcurrentLinkedDeque::size)
+                    .description("池中空闲的预热shell数")
+                    .tag("kind", tag)
+                    .register(meterRegistry);
+        }
+
+        if (config.isEnabled()) {
+            for (Kind kind : Kind.values()) {
+                scheduleRefill(kind);
+            }
+            long interval = Math.max(config.getMaxAgeMillis() / 4, 1000L);
+            terminalExecutors.getScheduler().scheduleWithFixedDelay(this::scheduleMaintenance,
+                    interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 取一个交互式shell进程，池空时现场启动
+     */
+    public Process acquireSession() throws IOException {
+        return acquire(Kind.SESSION);
+    }
+
+    /**
+     * 用一次性shell执行命令：命令写入stdin后关闭，stdout与stderr合并
+     * 命令包在 { } 中，shell读完整段脚本后才开始执行，命令本身读stdin时只会读到EOF
+     */
+    public Process startCommand(String command) throws IOException {
+        Process process = acquire(Kind.COMMAND);
+        String script = windows ? command + "\n" : "{\n" + command + "\n}\n";
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(script.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            process.destroyForcibly();
+            throw e;
+        }
+        return process;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        for (ConcurrentLinkedDeque<PooledProcess> deque : idle.values()) {
+            PooledProcess pooled;
+            while ((pooled = deque.pollFirst()) != null) {
+                pooled.process.destroyForcibly();
+            }
+        }
+    }
+
+    private Process acquire(Kind kind) throws IOException {
+        PooledProcess pooled;
+        long now = System.currentTimeMillis();
+        while ((pooled = idle.get(kind).pollFirst()) != null) {
+            if (pooled.process.isAlive() && now - pooled.spawnTime < config.getMaxAgeMillis()) {
+                hitCounters.get(kind).increment();
+                scheduleRefill(kind);
+                return pooled.process;
+            }
+            pooled.process.destroyForcibly();
+        }
+        missCounters.get(kind).increment();
+        scheduleRefill(kind);
+        return spawn(kind);
+    }
+
+    private Process spawn(Kind kind) throws IOException {
+        ProcessBuilder processBuilder;
+        if (kind == Kind.SESSION) {
+            processBuilder = windows
+                    ? new ProcessBuilder("powershell.exe", "-NoExit", "-Command", "-")
+                    // 关闭readline避免命令（包括结束标记命令）被回显到stderr
+                    : new ProcessBuilder("/bin/bash", "--noediting", "-i");
+        } else {
+            processBuilder = windows
+                    ? new ProcessBuilder("powershell.exe", "-ExecutionPolicy", "Bypass", "-Command", "-")
+                    : new ProcessBuilder("/bin/bash", "-s");
+            processBuilder.redirectErrorStream(true);
+        }
+        // ProcessBuilder默认已继承当前进程的环境变量，无需再复制System.getenv()
+        long start = System.nanoTime();
+        Process process = processBuilder.start();
+        spawnTimers.get(kind).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return process;
+    }
+
+    /**
+     * 在线程池中把空闲进程补足到目标数量，同一类型同时只有一个补充任务
+     */
+    private void scheduleRefill(Kind kind) {
+        if (!config.isEnabled() || closed || !refilling.get(kind).compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            terminalExecutors.getExecutor().execute(() -> refill(kind));
+        } catch (RejectedExecutionException e) {
+            refilling.get(kind).set(false);
+        }
+    }
+
+    private void refill(Kind kind) {
+        ConcurrentLinkedDeque<PooledProcess> deque = idle.get(kind);
+        int target = kind == Kind.SESSION ? config.getSessionShells() : config.getCommandShells();
+        try {
+            while (!closed && deque.size() < target) {
+                deque.addLast(new PooledProcess(spawn(kind)));
+            }
+        } catch (IOException e) {
+            System.err.println("预热shell进程启动失败: " + e.getMessage());
+        } finally {
+            refilling.get(kind).set(false);
+        }
+        if (closed) {
+            shutdown();
+        }
+    }
+
+    private void scheduleMaintenance() {
+        try {
+            terminalExecutors.getExecutor().execute(this::maintain);
+        } catch (RejectedExecutionException e) {
+            // 线程池繁忙时跳过本轮检查
+        }
+    }
+
+    /**
+     * 回收已退出或超过最大存活时间的空闲进程，再补足数量
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (Kind kind : Kind.values()) {
+            ConcurrentLinkedDeque<PooledProcess> deque = idle.get(kind);
+            for (PooledProcess pooled : deque) {
+                // 只销毁确实由本次移除的进程，避免与并发取用的请求争抢
+                if ((!pooled.process.isAlive() || now - pooled.spawnTime >= config.getMaxAgeMillis())
+                        && deque.removeFirstOccurrence(pooled)) {
+                    pooled.process.destroyForcibly();
+                }
+            }
+            scheduleRefill(kind);
+        }
+    }
+
+    private static class PooledProcess {
+        final Process process;
+        final long spawnTime = System.currentTimeMillis();
+
+        PooledProcess(Process process) {
+            this.process = process;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.util.ByteRingBuffer;
+import com.jeckchen.demo.util.ProcessTrees;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ShellSession.java
+ * @description Shell会话，维护持久化的shell进程
+ * 后台线程持续把stdout/stderr读入环形缓冲区；每条命令后向stdout追加带退出码和当前目录的结束标记，
+ * 再向stderr追加同一标记，两条流都读到标记即返回，不必等满超时时间，当前目录随之缓存在会话中。
+ * 会话的创建、过期和回收由 {@link ShellSessionRegistry} 管理
+ * @date 2026年10月17日
+ */
+public class ShellSession {
+    // 每条输出流保留的最大字节数
+    private static final int OUTPUT_BUFFER_SIZE = 512 * 1024;
+    private static final String SENTINEL_PREFIX = "__CMD_END_";
+    private static final String SENTINEL_SUFFIX = "__";
+    // 超时命令稍后输出的结束标记会混入下一条命令的输出，返回前将其去掉；stderr上的标记不带退出码
+    private static final Pattern STALE_SENTINEL = Pattern.compile("\r?\n?" + SENTINEL_PREFIX + "[0-9a-f]{32}" + SENTINEL_SUFFIX + "(-?\\d+(__[^\n]*)?)?\r?\n");
+    
+    private final String sessionId;
+    private final String owner;
+    private final long timeoutMillis;
+    private final Process process;
+    private final OutputStream outputStream;
+    private final InputStream inputStream;
+    private final InputStream errorStream;
+    private final ByteRingBuffer stdoutBuffer = new ByteRingBuffer(OUTPUT_BUFFER_SIZE);
+    private final ByteRingBuffer stderrBuffer = new ByteRingBuffer(OUTPUT_BUFFER_SIZE);
+    private final boolean windows;
+    private final long createdTime;
+    private volatile long lastAccessTime;
+    private volatile boolean closed = false;
+    // 当前目录缓存：由结束标记上报；未等待结束标记的命令可能改变目录，此时标记为过期
+    private volatile String currentDirectory = System.getProperty("user.dir");
+    private volatile boolean directoryStale = false;
+    
+    /**
+     * @param process 已启动的交互式shell进程，由 {@link ShellProcessPool} 提供
+     */
+    public ShellSession(String sessionId, String owner, long timeoutMillis, Process process, Executor readerExecutor) {
+        this.sessionId = sessionId;
+        this.owner = owner;
+        this.timeoutMillis = timeoutMillis;
+        this.createdTime = System.currentTimeMillis();
+        this.lastAccessTime = this.createdTime;
+        this.windows = System.getProperty("os.name").toLowerCase().contains("win");
+        this.process = process;
+        this.outputStream = process.getOutputStream();
+        this.inputStream = process.getInputStream();
+        this.errorStream = process.getErrorStream();
+        
+        readerExecutor.execute(() -> pump(inputStream, stdoutBuffer));
+        readerExecutor.execute(() -> pump(errorStream, stderrBuffer));
+    }
+    
+    /**
+     * 后台读取输出流写入环形缓冲区，流结束时关闭缓冲区唤醒等待者
+     */
+    private static void pump(InputStream in, ByteRingBuffer target) {
+        byte[] buffer = new byte[8192];
+        try {
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                target.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            // 会话关闭时流被关闭，正常退出
+        } finally {
+            target.close();
+        }
+    }
+    
+    public synchronized ExecuteResult executeCommand(String command, boolean waitForOutput, int timeoutSeconds) throws IOException, InterruptedException {
+        if (closed || !process.isAlive()) {
+            throw new IOException("Shell会话已关闭或进程已终止");
+        }
+        
+        updateLastAccessTime();
+        
+        long stdoutStart = stdoutBuffer.position();
+        long stderrStart = stderrBuffer.position();
+        
+        if (!waitForOutput) {
+            directoryStale = true;
+            outputStream.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
+            return new ExecuteResult("命令已发送，不等待输出", null);
+        }
+        
+        // 发送命令和结束标记到shell，标记由printf拼接生成，命令文本本身不包含完整标记
+        String id = UUID.randomUUID().toString().replace("-", "");
+        String sentinel = SENTINEL_PREFIX + id + SENTINEL_SUFFIX;
+        outputStream.write((command + "\n" + sentinelCommand(id)).getBytes(StandardCharsets.UTF_8));
+        outputStream.flush();
+        
+        byte[] marker = sentinel.getBytes(StandardCharsets.UTF_8);
+        long deadline = System.currentTimeMillis() + timeoutSeconds * 1000L;
+        Integer exitCode = null;
+        long outputEnd = awaitSentinel(stdoutBuffer, stdoutStart, marker, deadline);
+        if (outputEnd >= 0) {
+            byte[] line = stdoutBuffer.copyFrom(outputEnd);
+            int lineEnd = marker.length;
+            while (lineEnd < line.length && line[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            exitCode = parseSentinelLine(line, marker.length, lineEnd);
+        }
+        // stderr由另一个线程读取，可能落后于stdout，等到stderr上的标记再截取，避免迟到的输出算进下一条命令
+        long errorEnd = outputEnd >= 0 ? awaitSentinel(stderrBuffer, stderrStart, marker, deadline) : -1;
+        
+        byte[] stdout = outputEnd >= 0
+                ? copyRange(stdoutBuffer, stdoutStart, outputEnd)
+                : stdoutBuffer.copyFrom(stdoutStart);
+        String result = stripSentinels(stdout);
+        if (stdoutStart < stdoutBuffer.oldestPosition()) {
+            result = "[输出过长，仅保留最后" + OUTPUT_BUFFER_SIZE / 1024 + "KB]\n" + result;
+        }
+        byte[] stderr = errorEnd >= 0
+                ? copyRange(stderrBuffer, stderrStart, errorEnd)
+                : stderrBuffer.copyFrom(stderrStart);
+        String error = stripSentinels(stderr);
+        if (!error.isEmpty()) {
+            result += "\n[STDERR]\n" + error;
+        }
+        
+        return new ExecuteResult(result, exitCode);
+    }
+    
+    /**
+     * 等待缓冲区中出现完整的结束标记行（标记到换行），只扫描新增数据（带上标记长度的重叠部分）
+     * @return 标记起始位置，超时或流已结束时为-1
+     */
+    private static long awaitSentinel(ByteRingBuffer buffer, long start, byte[] marker, long deadline) throws InterruptedException {
+        long searchFrom = start;
+        long scanned = start;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !buffer.awaitData(scanned, remaining)) {
+                return -1;
+            }
+            byte[] window = buffer.copyFrom(searchFrom);
+            long windowStart = Math.max(searchFrom, buffer.oldestPosition());
+            scanned = windowStart + window.length;
+            int index = indexOf(window, marker);
+            if (index >= 0) {
+                for (int i = index + marker.length; i < window.length; i++) {
+                    if (window[i] == '\n') {
+                        return windowStart + index;
+                    }
+                }
+                // 标记行尚未读完整，等待更多数据后从标记处重新扫描
+                searchFrom = windowStart + index;
+            } else {
+                searchFrom = Math.max(windowStart, scanned - marker.length);
+            }
+        }
+    }
+    
+    /**
+     * 生成输出结束标记的命令：stdout上的标记后依次为上一条命令的退出码和shell当前目录，
+     * 随后在stderr上输出同一标记
+     */
+    private String sentinelCommand(String id) {
+        if (windows) {
+            return "$__cmdExit = if ($?) { 0 } elseif ($LASTEXITCODE) { $LASTEXITCODE } else { 1 }; "
+                    + "Write-Output ('" + SENTINEL_PREFIX + "' + '" + id + SENTINEL_SUFFIX + "' + $__cmdExit + '__' + $PWD.Path); "
+                    + "[Console]::Error.WriteLine('" + SENTINEL_PREFIX + "' + '" + id + SENTINEL_SUFFIX + "')\n";
+        }
+        return "printf '\\n" + SENTINEL_PREFIX + "%s" + SENTINEL_SUFFIX + "%d__%s\\n' '" + id + "' \"$?\" \"$PWD\"; "
+                + "printf '\\n" + SENTINEL_PREFIX + "%s" + SENTINEL_SUFFIX + "\\n' '" + id + "' >&2\n";
+    }
+    
+    /**
+     * 解析结束标记之后的 退出码__当前目录，顺带更新目录缓存
+     * @return 退出码
+     */
+    private Integer parseSentinelLine(byte[] bytes, int start, int end) {
+        String line = new String(bytes, start, end - start, StandardCharsets.UTF_8).trim();
+        int separator = line.indexOf("__");
+        String code = separator >= 0 ? line.substring(0, separator) : line;
+        if (separator >= 0 && separator + 2 < line.length()) {
+            currentDirectory = line.substring(separator + 2);
+            directoryStale = false;
+        }
+        try {
+            return Integer.parseInt(code);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static byte[] copyRange(ByteRingBuffer buffer, long from, long to) {
+        long start = Math.max(from, buffer.oldestPosition());
+        byte[] result = new byte[(int) Math.max(0, to - start)];
+        buffer.read(start, result, 0, result.length);
+        return result;
+    }
+    
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * 去掉超时命令遗留的结束标记，以及结束标记前由标记命令补上的换行
+     */
+    private static String stripSentinels(byte[] output) {
+        String text = stripTrailingNewline(new String(output, StandardCharsets.UTF_8));
+        return text.contains(SENTINEL_PREFIX) ? STALE_SENTINEL.matcher(text).replaceAll("") : text;
+    }
+    
+    /**
+     * 去掉结束标记前由标记命令补上的换行
+     */
+    private static String stripTrailingNewline(String output) {
+        if (output.endsWith("\r\n")) {
+            return output.substring(0, output.length() - 2);
+        }
+        if (output.endsWith("\n")) {
+            return output.substring(0, output.length() - 1);
+        }
+        return output;
+    }
+    
+    public boolean isAlive() {
+        return !closed && process.isAlive();
+    }
+    
+    public boolean isExpired() {
+        return System.currentTimeMillis() - lastAccessTime > timeoutMillis;
+    }
+    
+    /**
+     * 按最后访问时间计算的过期时刻
+     */
+    public long getExpireTime() {
+        return lastAccessTime + timeoutMillis;
+    }
+    
+    /**
+     * shell进程退出时完成，用于及时回收已退出的会话
+     */
+    public CompletableFuture<Process> onExit() {
+        return process.onExit();
+    }
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public String getOwner() {
+        return owner;
+    }
+    
+    public long getCreatedTime() {
+        return createdTime;
+    }
+    
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+    
+    /**
+     * 获取缓存的当前目录，不向shell发送任何命令
+     * 缓存过期时在Linux上从/proc/<pid>/cwd读取一次
+     */
+    public String getCurrentDirectory() {
+        if (directoryStale && !windows && process.isAlive()) {
+            try {
+                Path cwd = Files.readSymbolicLink(Paths.get("/proc", String.valueOf(process.pid()), "cwd"));
+                currentDirectory = cwd.toString();
+                directoryStale = false;
+            } catch (IOException | UnsupportedOperationException e) {
+                // 无/proc或无权限时沿用缓存值
+            }
+        }
+        return currentDirectory;
+    }
+    
+    private void updateLastAccessTime() {
+        this.lastAccessTime = System.currentTimeMillis();
+    }
+    
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                if (outputStream != null) outputStream.close();
+                if (inputStream != null) inputStream.close();
+                if (errorStream != null) errorStream.close();
+            } catch (IOException e) {
+                // 忽略关闭流时的错误
+            }
+            stdoutBuffer.close();
+            stderrBuffer.close();
+            
+            if (process != null && process.isAlive()) {
+                // 连同会话中启动的后台进程一起结束
+                ProcessTrees.destroyForcibly(process);
+            }
+        }
+    }
+    
+    /**
+     * 会话命令执行结果
+     */
+    public static class ExecuteResult {
+        private final String output;
+        private final Integer exitCode;
+        
+        public ExecuteResult(String output, Integer exitCode) {
+            this.output = output;
+            this.exitCode = exitCode;
+        }
+        
+        public String getOutput() {
+            return output;
+        }
+        
+        public Integer getExitCode() {
+            return exitCode;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ShellSessionRegistry.java
+ * @description Shell会话注册表
+ * 每个会话只挂一个按过期时刻触发的定时任务，访问会话只更新最后访问时间；
+ * 任务到期时若会话期间被访问过，则按新的过期时刻重新挂上，否则回收。
+ * 过期检查的开销与会话总数无关，shell进程退出时通过onExit立即回收。
+ * 关闭进程在线程池中进行，不占用请求线程
+ * @date 2026年10月17日
+ */
+@Component
+public class ShellSessionRegistry {
+
+    /**
+     * 会话被移除的原因
+     */
+    public enum EvictionReason {
+        /** 调用方主动关闭 */
+        CLOSED,
+        /** 空闲超时 */
+        EXPIRED,
+        /** shell进程已退出 */
+        EXITED,
+        /** 应用关闭 */
+        SHUTDOWN
+    }
+
+    private final TerminalProperties.Session config;
+    private final TerminalExecutors terminalExecutors;
+    private final ShellProcessPool shellProcessPool;
+    private final SessionResourceMonitor sessionResourceMonitor;
+    private final Map<String, ShellSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> ownerCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final Map<EvictionReason, Counter> evictionCounters = new EnumMap<>(EvictionReason.class);
+    private volatile boolean shutdown = false;
+
+    public ShellSessionRegistry(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors,
+                                ShellProcessPool shellProcessPool, SessionResourceMonitor sessionResourceMonitor,
+                                MeterRegistry meterRegistry) {
+        this.config = terminalProperties.getSession();
+        this.terminalExecutors = terminalExecutors;
+        this.shellProcessPool = shellProcessPool;
+        this.sessionResourceMonitor = sessionResourceMonitor;
+        Gauge.builder("terminal.shell.sessions", sessions, Map::size)
+                .description("当前持久化Shell会话数")
+                .register(meterRegistry);
+        for (EvictionReason reason : EvictionReason.values()) {
+            evictionCounters.put(reason, Counter.builder("terminal.shell.evictions")
+                    .description("被移除的Shell会话数")
+                    .tag("reason", reason.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 创建会话并登记，超过全局或单用户上限时抛出IllegalStateException
+     * @param owner 会话所属用户，未认证时为客户端地址
+     */
+    public ShellSession create(String owner) throws IOException {
+        if (shutdown) {
+            throw new IllegalStateException("服务正在关闭");
+        }
+        reserve(owner);
+        ShellSession session;
+        Process process = null;
+        try {
+            process = shellProcessPool.acquireSession();
+            session = new ShellSession(UUID.randomUUID().toString(), owner, config.getTimeoutMillis(),
+                    process, terminalExecutors.getExecutor());
+        } catch (IOException | RuntimeException e) {
+            unreserve(owner);
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            throw e;
+        }
+        sessions.put(session.getSessionId(), session);
+        String sessionId = session.getSessionId();
+        sessionResourceMonitor.track(sessionId, "shell", process.toHandle(), () -> close(sessionId));
+        scheduleExpiry(session, config.getTimeoutMillis());
+        session.onExit().thenRun(() -> evict(session.getSessionId(), EvictionReason.EXITED));
+        return session;
+    }
+
+    /**
+     * 查找会话，已过期但尚未回收的会话立即回收并返回null
+     */
+    public ShellSession get(String sessionId) {
+        ShellSession session = sessions.get(sessionId);
+        if (session != null && session.isExpired()) {
+            evict(sessionId, EvictionReason.EXPIRED);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * 关闭并移除会话
+     * @return 会话不存在时返回false
+     */
+    public boolean close(String sessionId) {
+        return evict(sessionId, EvictionReason.CLOSED);
+    }
+
+    public Collection<ShellSession> getSessions() {
+        return sessions.values();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+        List<ShellSession> remaining = new ArrayList<>(sessions.values());
+        for (ShellSession session : remaining) {
+            if (sessions.remove(session.getSessionId(), session)) {
+                sessionResourceMonitor.untrack(session.getSessionId());
+                unreserve(session.getOwner());
+                evictionCounters.get(EvictionReason.SHUTDOWN).increment();
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * 占用一个会话名额，全局和单用户计数都检查通过才算成功
+     */
+    private void reserve(String owner) {
+        if (totalCount.incrementAndGet() > config.getMaxSessions()) {
+            totalCount.decrementAndGet();
+            throw new IllegalStateException("会话数已达上限（" + config.getMaxSessions() + "）");
+        }
+        AtomicInteger ownerCount = ownerCounts.computeIfAbsent(owner, k -> new AtomicInteger());
+        if (ownerCount.incrementAndGet() > config.getMaxSessionsPerOwner()) {
+            ownerCount.decrementAndGet();
+            totalCount.decrementAndGet();
+            throw new IllegalStateException("当前用户会话数已达上限（" + config.getMaxSessionsPerOwner() + "）");
+        }
+    }
+
+    private void unreserve(String owner) {
+        totalCount.decrementAndGet();
+        ownerCounts.computeIfPresent(owner, (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    /**
+     * 在过期时刻挂一次检查；只有这一个任务，访问会话无需重新调度
+     */
+    private void scheduleExpiry(ShellSession session, long delayMillis) {
+        try {
+            terminalExecutors.getScheduler().schedule(() -> checkExpiry(session),
+                    Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 调度器已关闭，由shutdown统一回收
+        }
+    }
+
+    private void checkExpiry(ShellSession session) {
+        if (sessions.get(session.getSessionId()) != session) {
+            return;
+        }
+        long remaining = session.getExpireTime() - System.currentTimeMillis();
+        if (remaining > 0) {
+            scheduleExpiry(session, remaining);
+        } else {
+            evict(session.getSessionId(), EvictionReason.EXPIRED);
+        }
+    }
+
+    /**
+     * 移除会话并在线程池中关闭进程，同一会话只会被移除一次
+     */
+    private boolean evict(String sessionId, EvictionReason reason) {
+        ShellSession session = sessions.remove(sessionId);
+        if (session == null) {
+            return false;
+        }
+        sessionResourceMonitor.untrack(sessionId);
+        unreserve(session.getOwner());
+        evictionCounters.get(reason).increment();
+        try {
+            terminalExecutors.getExecutor().execute(session::close);
+        } catch (RejectedExecutionException e) {
+            session.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package com.jeckchen.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jeckchen.demo.config.SystemMetricsProperties;
+import com.jeckchen.demo.config.TerminalExecutors;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SystemMetricsBroadcaster.java
+ * @description 系统指标实时推送
+ * 每次采样只构造一次SSE事件，所有订阅者共用：新订阅者先收到完整快照（snapshot事件），
+ * 之后只收到有变化的字段（delta事件），消失的字段以null下发。发送在线程池中进行，某个订阅者上一次发送尚未完成时
+ * 跳过本次，下次改发完整快照，慢客户端不会拖慢采样线程和其它订阅者
+ * @date 2026年10月17日
+ */
+@Component
+public class SystemMetricsBroadcaster {
+
+    private final SystemMetricsProperties properties;
+    private final TerminalExecutors terminalExecutors;
+    private final ObjectMapper objectMapper;
+    private final SystemMetricsSampler sampler;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // 以下字段只在采样线程中访问
+    private SystemMetricsSampler.Sample previousSample;
+    private ObjectNode previousTree;
+
+    public SystemMetricsBroadcaster(SystemMetricsProperties properties, TerminalExecutors terminalExecutors,
+                                    ObjectMapper objectMapper, SystemMetricsSampler sampler,
+                                    MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.terminalExecutors = terminalExecutors;
+        this.objectMapper = objectMapper;
+        this.sampler = sampler;
+        Gauge.builder("system.metrics.subscribers", subscribers, List::size)
+                .description("订阅系统指标实时推送的连接数")
+                .register(meterRegistry);
+        sampler.addListener(this::broadcast);
+    }
+
+    /**
+     * 订阅实时推送，立即发送一次完整快照；订阅数已达上限时发送error事件后结束
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(properties.getStreamTimeoutMillis());
+        if (subscribers.size() >= properties.getMaxSubscribers()) {
+            try {
+                emitter.send(SseEmitter.event().name("error")
+                        .data("实时推送连接数已达上限（" + properties.getMaxSubscribers() + "）"));
+            } catch (Exception e) {
+                // 客户端已断开
+            }
+            emitter.complete();
+            return emitter;
+        }
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        SystemMetricsSampler.Sample latest = sampler.getLatest();
+        dispatch(subscriber, latest.getSequence(), snapshotEvent(latest), null, -1);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * 采样线程回调：构造一次完整快照事件和一次增量事件，分发给所有订阅者
+     */
+    private void broadcast(SystemMetricsSampler.Sample sample) {
+        ObjectNode tree = objectMapper.valueToTree(sample.getSnapshot());
+        SystemMetricsSampler.Sample previous = previousSample;
+        Set<ResponseBodyEmitter.DataWithMediaType> delta = null;
+        if (previous != null && !subscribers.isEmpty()) {
+            delta = deltaEvent(sample.getSequence(), previousTree, tree);
+        }
+        previousSample = sample;
+        previousTree = tree;
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> snapshot = snapshotEvent(sample);
+        long previousSequence = previous != null ? previous.getSequence() : -1;
+        for (Subscriber subscriber : subscribers) {
+            dispatch(subscriber, sample.getSequence(), snapshot, delta, previousSequence);
+        }
+    }
+
+    /**
+     * 订阅者恰好收到过上一次采样时发增量，否则发完整快照；上一次发送未完成时跳过
+     */
+    private void dispatch(Subscriber subscriber, long sequence, Set<ResponseBodyEmitter.DataWithMediaType> snapshot,
+                          Set<ResponseBodyEmitter.DataWithMediaType> delta, long previousSequence) {
+        Set<ResponseBodyEmitter.DataWithMediaType> event;
+        synchronized (subscriber) {
+            if (subscriber.sending) {
+                return;
+            }
+            subscriber.sending = true;
+            event = delta != null && subscriber.lastSequence == previousSequence ? delta : snapshot;
+            subscriber.lastSequence = sequence;
+        }
+        try {
+            terminalExecutors.getExecutor().execute(() -> send(subscriber, event));
+        } catch (RejectedExecutionException e) {
+            synchronized (subscriber) {
+                subscriber.sending = false;
+                // 未发出的采样不算已收到，下次发完整快照
+                subscriber.lastSequence = -1;
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        try {
+            subscriber.emitter.send(event);
+        } catch (Exception e) {
+            // 客户端已断开
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            synchronized (subscriber) {
+                subscriber.sending = false;
+            }
+        }
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> snapshotEvent(SystemMetricsSampler.Sample sample) {
+        return SseEmitter.event()
+                .name("snapshot")
+                .id(String.valueOf(sample.getSequence()))
+                .data(new String(sample.getJson(), StandardCharsets.UTF_8), MediaType.TEXT_PLAIN)
+                .build();
+    }
+
+    /**
+     * 只包含值有变化的字段；上次有、这次没有的字段置为null，客户端据此删除
+     */
+    private Set<ResponseBodyEmitter.DataWithMediaType> deltaEvent(long sequence, ObjectNode previous,
+                                                                  ObjectNode current) {
+        ObjectNode changed = objectMapper.createObjectNode();
+        for (Map.Entry<String, JsonNode> field : current.properties()) {
+            if (!field.getValue().equals(previous.get(field.getKey()))) {
+                changed.set(field.getKey(), field.getValue());
+            }
+        }
+        for (Map.Entry<String, JsonNode> field : previous.properties()) {
+            if (!current.has(field.getKey())) {
+                changed.putNull(field.getKey());
+            }
+        }
+        return SseEmitter.event()
+                .name("delta")
+                .id(String.valueOf(sequence))
+                .data(changed.toString(), MediaType.TEXT_PLAIN)
+                .build();
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private boolean sending = false;
+        private long lastSequence = -1;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
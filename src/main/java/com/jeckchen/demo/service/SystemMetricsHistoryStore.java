@@ -0,0 +1,265 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.SystemMetricsProperties;
+import com.jeckchen.demo.dto.SystemMetricsHistory;
+import com.jeckchen.demo.dto.SystemUsageSnapshot;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SystemMetricsHistoryStore.java
+ * @description 系统指标历史
+ * 每个分辨率层级是一组定长的基本类型环形数组，启动时一次分配，之后不再增长：
+ * 每个槽位保存一个时间段内各指标的最小值、最大值、总和与次数，槽位由时间直接算出，
+ * 写入时发现槽位中是旧时间段的数据就覆盖。查询时选择覆盖起始时间的最细层级，
+ * 在服务端按步长合并成最小/最大/平均值返回
+ * @date 2026年10月17日
+ */
+@Component
+public class SystemMetricsHistoryStore {
+
+    private static final int CPU_LOAD = 0;
+    private static final int USED_HEAP = 1;
+    private static final int USED_NON_HEAP = 2;
+    private static final int THREAD_COUNT = 3;
+    private static final int SERIES_COUNT = 4;
+
+    // 按分辨率从细到粗排列
+    private final Tier[] tiers;
+    private final int maxPoints;
+
+    public SystemMetricsHistoryStore(SystemMetricsProperties properties, SystemMetricsSampler sampler) {
+        SystemMetricsProperties.History config = properties.getHistory();
+        List<Tier> list = new ArrayList<>();
+        for (SystemMetricsProperties.Tier tier : config.getTiers()) {
+            if (tier.getResolutionMillis() <= 0 || tier.getRetentionMillis() < tier.getResolutionMillis()) {
+                throw new IllegalArgumentException("系统指标历史层级配置无效: " + tier);
+            }
+            long capacity = (tier.getRetentionMillis() + tier.getResolutionMillis() - 1) / tier.getResolutionMillis();
+            list.add(new Tier(tier.getResolutionMillis(), Math.toIntExact(capacity)));
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("系统指标历史至少需要一个层级");
+        }
+        list.sort(Comparator.comparingLong(tier -> tier.resolution));
+        this.tiers = list.toArray(new Tier[0]);
+        this.maxPoints = Math.max(config.getMaxPoints(), 1);
+        System.out.println("系统指标历史: " + tiers.length + "个层级, 共占用约" + (getMemoryBytes() / 1024) + "KB");
+        record(sampler.getLatest());
+        sampler.addListener(this::record);
+    }
+
+    /**
+     * 各层级数组占用的内存字节数，启动后不变
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Tier tier : tiers) {
+            bytes += tier.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private void record(SystemMetricsSampler.Sample sample) {
+        SystemUsageSnapshot snapshot = sample.getSnapshot();
+        double[] values = new double[SERIES_COUNT];
+        // CPU使用率无法获取时为-1，不计入
+        values[CPU_LOAD] = snapshot.getCpuLoad() >= 0 ? snapshot.getCpuLoad() : Double.NaN;
+        values[USED_HEAP] = snapshot.getUsedHeapMemory();
+        values[USED_NON_HEAP] = snapshot.getUsedNonHeapMemory();
+        values[THREAD_COUNT] = snapshot.getThreadCount();
+        for (Tier tier : tiers) {
+            tier.add(snapshot.getTimestamp(), values);
+        }
+    }
+
+    /**
+     * 查询[from, to)时间段的历史，按步长合并
+     * @param step 期望的步长（毫秒），不大于0时使用层级分辨率；会被放大到层级分辨率的整数倍，
+     *             并保证返回的点数不超过上限
+     * 时间范围先截到最粗层级的保留范围内，超出部分不可能有数据
+     * @throws IllegalArgumentException 时间范围无效
+     */
+    public SystemMetricsHistory query(long from, long to, long step) {
+        if (to <= from) {
+            throw new IllegalArgumentException("结束时间必须晚于起始时间");
+        }
+        try {
+            Math.subtractExact(to, from);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("时间范围过大");
+        }
+        long now = System.currentTimeMillis();
+        Tier coarsest = tiers[tiers.length - 1];
+        from = Math.max(from, now - coarsest.retention());
+        to = Math.min(to, now + coarsest.resolution);
+        if (to <= from) {
+            throw new IllegalArgumentException("时间范围内没有保留的历史数据");
+        }
+        Tier tier = selectTier(from, now);
+        long resolution = tier.resolution;
+        long range = to - from;
+        step = Math.min(Math.max(step, resolution), Math.max(range, resolution));
+        step = Math.max(step, (range + maxPoints - 1) / maxPoints);
+        step = (step + resolution - 1) / resolution * resolution;
+        long start = Math.floorDiv(from, step) * step;
+        return tier.query(start, to, step);
+    }
+
+    /**
+     * 选择保留时长覆盖起始时间的最细层级，都不覆盖时使用最粗的层级
+     */
+    private Tier selectTier(long from, long now) {
+        for (Tier tier : tiers) {
+            if (from >= now - tier.retention()) {
+                return tier;
+            }
+        }
+        return tiers[tiers.length - 1];
+    }
+
+    /**
+     * 一个分辨率层级，槽位i的第s个指标位于下标 i * SERIES_COUNT + s；包内可见供单元测试使用
+     */
+    static final class Tier {
+        final long resolution;
+        final int capacity;
+        // 每个槽位所属时间段的起始时间，Long.MIN_VALUE表示从未写入
+        private final long[] bucketTimes;
+        private final int[] counts;
+        private final double[] mins;
+        private final double[] maxs;
+        private final double[] sums;
+
+        Tier(long resolution, int capacity) {
+            this.resolution = resolution;
+            this.capacity = capacity;
+            this.bucketTimes = new long[capacity];
+            Arrays.fill(bucketTimes, Long.MIN_VALUE);
+            this.counts = new int[capacity * SERIES_COUNT];
+            this.mins = new double[capacity * SERIES_COUNT];
+            this.maxs = new double[capacity * SERIES_COUNT];
+            this.sums = new double[capacity * SERIES_COUNT];
+        }
+
+        long retention() {
+            return resolution * capacity;
+        }
+
+        long memoryBytes() {
+            return (long) capacity * (Long.BYTES + SERIES_COUNT * (Integer.BYTES + 3L * Double.BYTES));
+        }
+
+        private int slot(long bucketTime) {
+            return (int) Math.floorMod(Math.floorDiv(bucketTime, resolution), (long) capacity);
+        }
+
+        synchronized void add(long timestamp, double[] values) {
+            long bucketTime = Math.floorDiv(timestamp, resolution) * resolution;
+            int slot = slot(bucketTime);
+            if (bucketTimes[slot] != bucketTime) {
+                // 系统时钟回拨时，槽位中可能已是更新的时间段，丢弃这次采样
+                if (bucketTimes[slot] > bucketTime) {
+                    return;
+                }
+                bucketTimes[slot] = bucketTime;
+                Arrays.fill(counts, slot * SERIES_COUNT, (slot + 1) * SERIES_COUNT, 0);
+            }
+            for (int series = 0; series < SERIES_COUNT; series++) {
+                double value = values[series];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                int index = slot * SERIES_COUNT + series;
+                if (counts[index] == 0) {
+                    mins[index] = value;
+                    maxs[index] = value;
+                    sums[index] = value;
+                } else {
+                    mins[index] = Math.min(mins[index], value);
+                    maxs[index] = Math.max(maxs[index], value);
+                    sums[index] += value;
+                }
+                counts[index]++;
+            }
+        }
+
+        /**
+         * 逐个步长合并槽位，没有任何数据的步长不输出；只遍历仍保留数据的[oldest, newest]区间
+         */
+        synchronized SystemMetricsHistory query(long start, long to, long step) {
+            // 早于保留范围的槽位已被覆盖，不必遍历
+            long newest = Long.MIN_VALUE;
+            for (long time : bucketTimes) {
+                newest = Math.max(newest, time);
+            }
+            long oldest = newest == Long.MIN_VALUE ? to : newest - retention() + resolution;
+            long first = Math.max(start, Math.floorDiv(oldest, step) * step);
+            long end = newest == Long.MIN_VALUE ? first : Math.min(to, newest + resolution);
+            int pointCount = (int) Math.max(0, (end - first + step - 1) / step);
+            long[] timestamps = new long[pointCount];
+            double[][] min = new double[SERIES_COUNT][pointCount];
+            double[][] max = new double[SERIES_COUNT][pointCount];
+            double[][] avg = new double[SERIES_COUNT][pointCount];
+            int[] pointCounts = new int[SERIES_COUNT];
+            double[] pointMins = new double[SERIES_COUNT];
+            double[] pointMaxs = new double[SERIES_COUNT];
+            double[] pointSums = new double[SERIES_COUNT];
+            int points = 0;
+            for (long pointStart = first; pointStart < end; pointStart += step) {
+                Arrays.fill(pointCounts, 0);
+                boolean hasData = false;
+                long bucketStart = Math.max(pointStart, Math.floorDiv(oldest, resolution) * resolution);
+                for (long bucketTime = bucketStart; bucketTime < pointStart + step && bucketTime <= newest;
+                     bucketTime += resolution) {
+                    int slot = slot(bucketTime);
+                    if (bucketTimes[slot] != bucketTime) {
+                        continue;
+                    }
+                    for (int series = 0; series < SERIES_COUNT; series++) {
+                        int index = slot * SERIES_COUNT + series;
+                        int count = counts[index];
+                        if (count == 0) {
+                            continue;
+                        }
+                        if (pointCounts[series] == 0) {
+                            pointMins[series] = mins[index];
+                            pointMaxs[series] = maxs[index];
+                            pointSums[series] = sums[index];
+                        } else {
+                            pointMins[series] = Math.min(pointMins[series], mins[index]);
+                            pointMaxs[series] = Math.max(pointMaxs[series], maxs[index]);
+                            pointSums[series] += sums[index];
+                        }
+                        pointCounts[series] += count;
+                        hasData = true;
+                    }
+                }
+                if (!hasData) {
+                    continue;
+                }
+                timestamps[points] = pointStart;
+                for (int series = 0; series < SERIES_COUNT; series++) {
+                    int count = pointCounts[series];
+                    min[series][points] = count == 0 ? -1 : pointMins[series];
+                    max[series][points] = count == 0 ? -1 : pointMaxs[series];
+                    avg[series][points] = count == 0 ? -1 : pointSums[series] / count;
+                }
+                points++;
+            }
+            SystemMetricsHistory.Series[] result = new SystemMetricsHistory.Series[SERIES_COUNT];
+            for (int series = 0; series < SERIES_COUNT; series++) {
+                result[series] = new SystemMetricsHistory.Series(Arrays.copyOf(min[series], points),
+                        Arrays.copyOf(max[series], points), Arrays.copyOf(avg[series], points));
+            }
+            return new SystemMetricsHistory(start, to, step, resolution, Arrays.copyOf(timestamps, points),
+                    result[CPU_LOAD], result[USED_HEAP], result[USED_NON_HEAP], result[THREAD_COUNT]);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.jeckchen.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeckchen.demo.config.SystemMetricsProperties;
+import com.jeckchen.demo.dto.SystemUsageSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SystemMetricsSampler.java
+ * @description 系统指标后台采样
+ * 单个定时任务按固定间隔采样并序列化成JSON，请求直接返回最近一次的结果，
+ * 请求开销与轮询的客户端数量无关；每次采样有递增的序号，用作ETag。
+ * 采样完成后通知监听器，监听器在采样线程中执行，不能阻塞
+ * @date 2026年10月17日
+ */
+@Component
+public class SystemMetricsSampler {
+
+    private final ObjectMapper objectMapper;
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    private final RuntimeMXBean runtimeMXBean = ManagementFactory.getRuntimeMXBean();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler;
+    private long sequence;
+    private volatile Sample latest;
+    private final List<Consumer<Sample>> listeners = new CopyOnWriteArrayList<>();
+
+    public SystemMetricsSampler(SystemMetricsProperties properties, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        // 启动时先采一次，保证请求总能拿到快照
+        sample();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "system-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(properties.getSampleIntervalMillis(), 100L);
+        scheduler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 最近一次采样结果
+     */
+    public Sample getLatest() {
+        return latest;
+    }
+
+    /**
+     * 注册采样监听器，每次采样成功后调用
+     */
+    public void addListener(Consumer<Sample> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        try {
+            SystemUsageSnapshot snapshot = collect();
+            latest = new Sample(++sequence, snapshot, objectMapper.writeValueAsBytes(snapshot));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // 单次采样失败不影响后续采样，继续提供上一次的结果
+            System.err.println("系统指标采样失败: " + e.getMessage());
+            return;
+        }
+        for (Consumer<Sample> listener : listeners) {
+            try {
+                listener.accept(latest);
+            } catch (RuntimeException e) {
+                System.err.println("系统指标监听器执行失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private SystemUsageSnapshot collect() {
+        double cpuLoad = -1;
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            cpuLoad = ((com.sun.management.OperatingSystemMXBean) osBean).getCpuLoad();
+        }
+        MemoryUsage heapMemoryUsage = memoryMXBean.getHeapMemoryUsage();
+        MemoryUsage nonHeapMemoryUsage = memoryMXBean.getNonHeapMemoryUsage();
+        return new SystemUsageSnapshot(cpuLoad,
+                heapMemoryUsage.getUsed(), heapMemoryUsage.getMax(),
+                nonHeapMemoryUsage.getUsed(), nonHeapMemoryUsage.getMax(),
+                runtimeMXBean.getVmName(), runtimeMXBean.getVmVersion(),
+                runtimeMXBean.getStartTime(), runtimeMXBean.getUptime(),
+                threadMXBean.getThreadCount(), System.currentTimeMillis());
+    }
+
+    /**
+     * 一次采样：快照、序列化好的JSON和序号
+     */
+    public static final class Sample {
+        private final long sequence;
+        private final SystemUsageSnapshot snapshot;
+        private final byte[] json;
+        private final String etag;
+
+        Sample(long sequence, SystemUsageSnapshot snapshot, byte[] json) {
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+            this.json = json;
+            this.etag = "\"" + Long.toHexString(snapshot.getJvmStartTime()) + "-" + sequence + "\"";
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public SystemUsageSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * 序列化好的JSON，调用方不得修改
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * 带JVM启动时间的ETag，应用重启后序号重新计数也不会与旧值相同
+         */
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
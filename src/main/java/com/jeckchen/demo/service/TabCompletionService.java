@@ -0,0 +1,330 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.config.TerminalExecutors;
+import com.jeckchen.demo.config.TerminalProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TabCompletionService.java
+ * @description 终端Tab补全
+ * 命令名和目录内容各建一份排好序的名称数组，补全时二分查找前缀，与目录大小无关。
+ * PATH中的可执行文件在后台定期重建；目录列表按修改时间校验缓存，
+ * 短时间内重复补全（按住Tab）不访问文件系统
+ * @date 2026年10月17日
+ */
+@Component
+public class TabCompletionService {
+
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    private static final Comparator<String> ORDER = WINDOWS ? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder();
+    private static final String[] POWERSHELL_COMMANDS = {"Get-ChildItem", "Get-Location", "Set-Location",
+            "Get-Process", "Get-Service", "Start-Process", "Stop-Process", "Clear-Host", "Get-Help"};
+
+    private final TerminalProperties.Completion config;
+    private final TerminalExecutors terminalExecutors;
+    private final AtomicBoolean refreshingCommands = new AtomicBoolean();
+    private volatile PrefixIndex commands;
+    private volatile long commandsBuiltAt;
+
+    // 最近补全过的目录，按访问顺序淘汰
+    private final Map<Path, DirectoryListing> directories;
+
+    public TabCompletionService(TerminalProperties terminalProperties, TerminalExecutors terminalExecutors) {
+        this.config = terminalProperties.getCompletion();
+        this.terminalExecutors = terminalExecutors;
+        int maxDirectories = config.getMaxCachedDirectories();
+        this.directories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, DirectoryListing> eldest) {
+                return size() > maxDirectories;
+            }
+        };
+        scheduleCommandRefresh();
+    }
+
+    /**
+     * 补全当前行的最后一个单词，返回替换该单词的候选，目录以分隔符结尾
+     * 行首单词且不含路径分隔符时先补全命令，其余情况按路径补全
+     * @param cwd 终端当前工作目录，相对路径以此为基准；为null时只补全命令和绝对路径
+     */
+    public List<String> complete(String line, Path cwd) {
+        int start = line.length();
+        while (start > 0 && !Character.isWhitespace(line.charAt(start - 1))) {
+            start--;
+        }
+        String word = line.substring(start);
+        boolean firstWord = line.substring(0, start).isBlank();
+        int limit = config.getMaxResults();
+
+        Set<String> candidates = new LinkedHashSet<>();
+        if (firstWord && separatorIndex(word) < 0) {
+            candidates.addAll(commands().find(word, limit));
+        }
+        if (candidates.size() < limit) {
+            completePath(word, cwd, candidates, limit);
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    private void completePath(String word, Path cwd, Set<String> candidates, int limit) {
+        int separator = separatorIndex(word);
+        String directoryPart = word.substring(0, separator + 1);
+        String namePrefix = word.substring(separator + 1);
+        Path directory;
+        try {
+            directory = resolveDirectory(directoryPart, cwd);
+        } catch (InvalidPathException e) {
+            return;
+        }
+        if (directory == null) {
+            return;
+        }
+        DirectoryListing listing;
+        try {
+            listing = listDirectory(directory);
+        } catch (IOException e) {
+            return;
+        }
+        // 以.开头的隐藏文件只在前缀以.开头时补全
+        boolean includeHidden = namePrefix.startsWith(".");
+        for (int index : listing.index.findIndexes(namePrefix, limit - candidates.size(), includeHidden)) {
+            String name = listing.index.names[index];
+            candidates.add(directoryPart + name + (listing.isDirectory(directory, index) ? File.separator : ""));
+        }
+    }
+
+    /**
+     * @return 相对路径且工作目录未知时为null
+     */
+    private static Path resolveDirectory(String directoryPart, Path cwd) {
+        if (directoryPart.startsWith("~/")) {
+            return Paths.get(System.getProperty("user.home")).resolve(directoryPart.substring(2));
+        }
+        if (cwd == null) {
+            return directoryPart.isEmpty() || !Paths.get(directoryPart).isAbsolute() ? null : Paths.get(directoryPart);
+        }
+        if (directoryPart.isEmpty()) {
+            return cwd;
+        }
+        return cwd.resolve(directoryPart);
+    }
+
+    private static int separatorIndex(String word) {
+        int separator = word.lastIndexOf('/');
+        if (WINDOWS) {
+            separator = Math.max(separator, word.lastIndexOf('\\'));
+        }
+        return separator;
+    }
+
+    /**
+     * 取目录的名称索引：TTL内直接使用缓存，过期后只检查一次目录修改时间，变化了才重新列出
+     */
+    private DirectoryListing listDirectory(Path directory) throws IOException {
+        long now = System.currentTimeMillis();
+        DirectoryListing cached;
+        synchronized (directories) {
+            cached = directories.get(directory);
+        }
+        if (cached != null && now - cached.checkedAt < config.getDirectoryCacheTtlMillis()) {
+            return cached;
+        }
+        FileTime modified = Files.getLastModifiedTime(directory);
+        if (cached != null && cached.modified.equals(modified)) {
+            cached.checkedAt = now;
+            return cached;
+        }
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                names.add(entry.getFileName().toString());
+            }
+        }
+        DirectoryListing listing = new DirectoryListing(new PrefixIndex(names), modified, now);
+        synchronized (directories) {
+            directories.put(directory, listing);
+        }
+        return listing;
+    }
+
+    /**
+     * 命令索引：从未建立时同步建立，过期时返回旧索引并在后台重建
+     */
+    private PrefixIndex commands() {
+        PrefixIndex current = commands;
+        if (current == null) {
+            current = buildCommandIndex();
+            commands = current;
+            commandsBuiltAt = System.currentTimeMillis();
+        } else if (System.currentTimeMillis() - commandsBuiltAt > config.getPathRefreshMillis()) {
+            scheduleCommandRefresh();
+        }
+        return current;
+    }
+
+    private void scheduleCommandRefresh() {
+        if (!refreshingCommands.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            terminalExecutors.getExecutor().execute(() -> {
+                try {
+                    commands = buildCommandIndex();
+                    commandsBuiltAt = System.currentTimeMillis();
+                } finally {
+                    refreshingCommands.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingCommands.set(false);
+        }
+    }
+
+    /**
+     * 扫描PATH中的可执行文件；Windows按PATHEXT判断扩展名，并加入常用PowerShell命令
+     */
+    private static PrefixIndex buildCommandIndex() {
+        Set<String> names = new TreeSet<>();
+        String path = System.getenv("PATH");
+        List<String> extensions = new ArrayList<>();
+        if (WINDOWS) {
+            names.addAll(Arrays.asList(POWERSHELL_COMMANDS));
+            String pathExt = System.getenv().getOrDefault("PATHEXT", ".COM;.EXE;.BAT;.CMD");
+            for (String extension : pathExt.split(";")) {
+                extensions.add(extension.toLowerCase(Locale.ROOT));
+            }
+        }
+        if (path != null) {
+            for (String entry : path.split(File.pathSeparator)) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(entry))) {
+                    for (Path file : stream) {
+                        String name = file.getFileName().toString();
+                        if (WINDOWS ? hasExtension(name, extensions) : Files.isExecutable(file) && !Files.isDirectory(file)) {
+                            names.add(name);
+                        }
+                    }
+                } catch (IOException | InvalidPathException e) {
+                    // PATH中不存在或无权限的目录直接跳过
+                }
+            }
+        }
+        return new PrefixIndex(names);
+    }
+
+    private static boolean hasExtension(String name, List<String> extensions) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 排好序的名称数组，二分查找前缀的起点后顺序取出
+     */
+    private static final class PrefixIndex {
+        private final String[] names;
+
+        PrefixIndex(Collection<String> names) {
+            this.names = names.toArray(new String[0]);
+            Arrays.sort(this.names, ORDER);
+        }
+
+        List<String> find(String prefix, int limit) {
+            List<String> result = new ArrayList<>();
+            for (int index : findIndexes(prefix, limit, true)) {
+                result.add(names[index]);
+            }
+            return result;
+        }
+
+        int[] findIndexes(String prefix, int limit, boolean includeHidden) {
+            int[] result = new int[Math.max(limit, 0)];
+            int count = 0;
+            for (int i = lowerBound(prefix); i < names.length && count < limit && startsWith(names[i], prefix); i++) {
+                if (includeHidden || !names[i].startsWith(".")) {
+                    result[count++] = i;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = names.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ORDER.compare(names[mid], prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static boolean startsWith(String name, String prefix) {
+            return name.regionMatches(WINDOWS, 0, prefix, 0, prefix.length());
+        }
+    }
+
+    /**
+     * 一个目录的缓存：名称索引，以及按需判断、记住结果的目录标记
+     */
+    private static final class DirectoryListing {
+        private static final byte UNKNOWN = 0;
+        private static final byte FILE = 1;
+        private static final byte DIRECTORY = 2;
+
+        final PrefixIndex index;
+        final FileTime modified;
+        volatile long checkedAt;
+        // 只对作为候选返回过的条目判断是否为目录，列目录时不逐个stat
+        private final byte[] kinds;
+
+        DirectoryListing(PrefixIndex index, FileTime modified, long checkedAt) {
+            this.index = index;
+            this.modified = modified;
+            this.checkedAt = checkedAt;
+            this.kinds = new byte[index.names.length];
+        }
+
+        boolean isDirectory(Path directory, int index) {
+            byte kind = kinds[index];
+            if (kind == UNKNOWN) {
+                kind = Files.isDirectory(directory.resolve(this.index.names[index])) ? DIRECTORY : FILE;
+                kinds[index] = kind;
+            }
+            return kind == DIRECTORY;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.jeckchen.demo.util;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ByteRingBuffer.java
+ * @description 定长字节环形缓冲区
+ * 以写入总字节数作为绝对位置，读取方记住位置即可只取新增部分；
+ * 写满后覆盖最旧的数据，内存占用固定为容量大小
+ * @date 2026年10月17日
+ */
+public class ByteRingBuffer {
+
+    private final byte[] data;
+    private long written;
+    private boolean closed;
+
+    public ByteRingBuffer(int capacity) {
+        this.data = new byte[capacity];
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    /**
+     * 写入数据并唤醒等待新数据的线程
+     */
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        if (length > data.length) {
+            // 只保留最后capacity个字节
+            offset += length - data.length;
+            written += length - data.length;
+            length = data.length;
+        }
+        int start = (int) (written % data.length);
+        int firstPart = Math.min(length, data.length - start);
+        System.arraycopy(bytes, offset, data, start, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(bytes, offset + firstPart, data, 0, length - firstPart);
+        }
+        written += length;
+        notifyAll();
+    }
+
+    /**
+     * 当前写入位置，即累计写入的字节数
+     */
+    public synchronized long position() {
+        return written;
+    }
+
+    /**
+     * 仍保留在缓冲区中的最旧数据的位置
+     */
+    public synchronized long oldestPosition() {
+        return Math.max(0, written - data.length);
+    }
+
+    /**
+     * 复制从指定位置到当前写入位置的数据，已被覆盖的部分从最旧数据开始
+     */
+    public synchronized byte[] copyFrom(long from) {
+        long start = Math.max(from, oldestPosition());
+        if (start >= written) {
+            return new byte[0];
+        }
+        byte[] result = new byte[(int) (written - start)];
+        read(start, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * 从指定位置读取最多length个字节，返回实际读取的字节数
+     * 指定位置已被覆盖时从最旧数据开始读取
+     */
+    public synchronized int read(long from, byte[] dest, int offset, int length) {
+        long start = Math.max(from, oldestPosition());
+        int count = (int) Math.min(length, written - start);
+        if (count <= 0) {
+            return 0;
+        }
+        int index = (int) (start % data.length);
+        int firstPart = Math.min(count, data.length - index);
+        System.arraycopy(data, index, dest, offset, firstPart);
+        if (firstPart < count) {
+            System.arraycopy(data, 0, dest, offset + firstPart, count - firstPart);
+        }
+        return count;
+    }
+
+    /**
+     * 等待写入位置超过指定位置
+     * @return 是否有新数据；超时或缓冲区已关闭时返回false
+     */
+    public synchronized boolean awaitData(long position, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (written <= position && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return written > position;
+    }
+
+    /**
+     * 关闭缓冲区，唤醒所有等待的线程
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,83 @@
+package com.jeckchen.demo.util;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ControlCharFilter.java
+ * @description 终端输出控制字符过滤器
+ * 用预先构建的查找表单次扫描：不含需过滤字符时原样返回输入，不产生任何分配；
+ * 否则只分配一次结果数组。替代每次调用都重新编译正则并生成新字符串的replaceAll
+ * @date 2026年10月17日
+ */
+public final class ControlCharFilter {
+
+    /** 过滤全部C0控制字符（保留\t \n \r）及DEL，与原正则行为一致 */
+    public static final ControlCharFilter STRICT = new ControlCharFilter(false);
+
+    /**
+     * 在STRICT基础上保留xterm.js会解释的控制字符，与二进制帧透传的内容一致：
+     * ESC和BEL用于颜色、光标控制和OSC序列，BS用于readline的退格回显，
+     * VT/FF换行，SO/SI切换字符集（curses画线）
+     */
+    public static final ControlCharFilter XTERM = new ControlCharFilter(true);
+
+    // 只有ASCII范围内的字符可能被过滤，下标为字符值
+    private final boolean[] removable = new boolean[128];
+
+    private ControlCharFilter(boolean keepEscapeSequences) {
+        for (int c = 0x00; c <= 0x1F; c++) {
+            removable[c] = true;
+        }
+        removable['\t'] = false;
+        removable['\n'] = false;
+        removable['\r'] = false;
+        removable[0x7F] = true;
+        if (keepEscapeSequences) {
+            removable[0x1B] = false;
+            removable[0x07] = false;
+            removable['\b'] = false;
+            removable[0x0B] = false;
+            removable['\f'] = false;
+            removable[0x0E] = false;
+            removable[0x0F] = false;
+        }
+    }
+
+    /**
+     * 根据是否保留转义序列选择过滤器
+     */
+    public static ControlCharFilter of(boolean keepEscapeSequences) {
+        return keepEscapeSequences ? XTERM : STRICT;
+    }
+
+    /**
+     * 判断字符是否需要过滤
+     */
+    public boolean isRemovable(char c) {
+        return c < 128 && removable[c];
+    }
+
+    /**
+     * 过滤字符串，不含需过滤字符时返回原对象
+     */
+    public String filter(String data) {
+        int length = data.length();
+        int first = 0;
+        while (first < length && !isRemovable(data.charAt(first))) {
+            first++;
+        }
+        if (first == length) {
+            return data;
+        }
+        char[] result = new char[length - 1];
+        data.getChars(0, first, result, 0);
+        int count = first;
+        for (int i = first + 1; i < length; i++) {
+            char c = data.charAt(i);
+            if (!isRemovable(c)) {
+                result[count++] = c;
+            }
+        }
+        return new String(result, 0, count);
+    }
+}
@@ -0,0 +1,284 @@
+package com.jeckchen.demo.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ProcFileReader.java
+ * @description /proc文件读取与解析
+ * 文件保持打开，每次读取前回到开头，内核会重新生成内容；内容读入复用的字节数组，
+ * 逐行按空白和冒号切分字段，数字直接从字节解析，读取和解析过程不创建对象。
+ * 缓冲区装不下时扩容一次，之后继续复用。也可用同一个缓冲区逐个读取/proc/<pid>/下的文件
+ * @date 2026年10月17日
+ */
+public class ProcFileReader implements Closeable {
+
+    private final String path;
+    private RandomAccessFile file;
+    private byte[] buffer;
+    private int length;
+    // 当前行的起止位置，以及行内的解析位置
+    private int lineStart;
+    private int lineEnd;
+    private int position;
+    // 最近一次nextToken取得的字段
+    private int tokenStart;
+    private int tokenEnd;
+
+    public ProcFileReader(String path, int initialCapacity) {
+        this.path = path;
+        this.buffer = new byte[Math.max(initialCapacity, 256)];
+    }
+
+    /**
+     * 不绑定固定文件，只通过 {@link #load(String)} 逐个读取文件
+     */
+    public ProcFileReader(int initialCapacity) {
+        this(null, initialCapacity);
+    }
+
+    /**
+     * 重新读取整个文件，解析位置回到第一行之前
+     * @return 文件不存在或无法读取时为false
+     */
+    public boolean load() {
+        try {
+            if (file == null) {
+                file = new RandomAccessFile(path, "r");
+            }
+            file.seek(0);
+            readFully(file);
+        } catch (IOException e) {
+            close();
+            length = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 读取另一个文件到同一个缓冲区，读完即关闭，用于逐个读取进程的/proc文件
+     * @return 文件不存在（进程已退出）或无权限时为false
+     */
+    public boolean load(String otherPath) {
+        try (RandomAccessFile other = new RandomAccessFile(otherPath, "r")) {
+            readFully(other);
+        } catch (IOException e) {
+            length = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private void readFully(RandomAccessFile source) throws IOException {
+        length = 0;
+        int read;
+        while ((read = source.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        lineStart = 0;
+        lineEnd = -1;
+        position = 0;
+    }
+
+    /**
+     * 移到下一行
+     * @return 没有更多行时为false
+     */
+    public boolean nextLine() {
+        int start = lineEnd + 1;
+        if (start >= length) {
+            return false;
+        }
+        int end = start;
+        while (end < length && buffer[end] != '\n') {
+            end++;
+        }
+        lineStart = start;
+        lineEnd = end;
+        position = start;
+        return true;
+    }
+
+    /**
+     * 当前行是否以prefix开头
+     */
+    public boolean lineStartsWith(byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[lineStart + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取当前行的下一个字段，字段以空白或冒号分隔
+     * @return 当前行没有更多字段时为false
+     */
+    public boolean nextToken() {
+        while (position < lineEnd && isDelimiter(buffer[position])) {
+            position++;
+        }
+        if (position >= lineEnd) {
+            tokenStart = tokenEnd = position;
+            return false;
+        }
+        tokenStart = position;
+        while (position < lineEnd && !isDelimiter(buffer[position])) {
+            position++;
+        }
+        tokenEnd = position;
+        return true;
+    }
+
+    /**
+     * 把下一个字段解析为整数，没有字段或不是数字时返回-1
+     */
+    public long nextLong() {
+        if (!nextToken()) {
+            return -1;
+        }
+        return parseLong(tokenStart, tokenEnd);
+    }
+
+    /**
+     * 把下一个字段解析为小数，如loadavg中的"0.52"，没有字段或不是数字时返回-1
+     */
+    public double nextDecimal() {
+        if (!nextToken()) {
+            return -1;
+        }
+        long integer = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean digits = false;
+        boolean afterPoint = false;
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            byte b = buffer[i];
+            if (b == '.' && !afterPoint) {
+                afterPoint = true;
+            } else if (b >= '0' && b <= '9') {
+                digits = true;
+                if (afterPoint) {
+                    fraction = fraction * 10 + (b - '0');
+                    scale *= 10;
+                } else {
+                    integer = integer * 10 + (b - '0');
+                }
+            } else {
+                return -1;
+            }
+        }
+        return digits ? integer + (double) fraction / scale : -1;
+    }
+
+    /**
+     * 解析位置移到当前行最后一个b之后，用于跳过/proc/<pid>/stat中可能含空格和括号的进程名
+     * @return 当前行没有b时为false
+     */
+    public boolean skipPastLast(byte b) {
+        for (int i = lineEnd - 1; i >= position; i--) {
+            if (buffer[i] == b) {
+                position = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 跳过count个字段
+     */
+    public void skipTokens(int count) {
+        for (int i = 0; i < count && nextToken(); i++) {
+            // 只移动位置
+        }
+    }
+
+    /**
+     * 最近一次取得的字段是否等于name
+     */
+    public boolean tokenEquals(byte[] name) {
+        if (tokenEnd - tokenStart != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buffer[tokenStart + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 最近一次取得的字段是否以prefix开头
+     */
+    public boolean tokenStartsWith(byte[] prefix) {
+        if (tokenEnd - tokenStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[tokenStart + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把最近一次取得的字段从skip个字节之后解析为整数，如"cpu12"跳过3个字节得到12；不是数字时返回-1
+     */
+    public long tokenSuffixAsLong(int skip) {
+        return parseLong(tokenStart + skip, tokenEnd);
+    }
+
+    /**
+     * 最近一次取得的字段转为字符串，会创建对象，只在发现设备等低频场景使用
+     */
+    public String tokenString() {
+        return new String(buffer, tokenStart, tokenEnd - tokenStart, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // 关闭只读文件失败无需处理
+            }
+            file = null;
+        }
+    }
+
+    private long parseLong(int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ' ' || b == '\t' || b == ':' || b == '\r';
+    }
+}
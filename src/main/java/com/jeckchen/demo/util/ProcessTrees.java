@@ -0,0 +1,35 @@
+package com.jeckchen.demo.util;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ProcessTrees.java
+ * @description 进程树工具
+ * 只结束shell本身时，由它启动的子进程会被init接管继续运行；
+ * 这里先记录全部后代进程，再依次强制结束，保证整棵进程树都被回收
+ * @date 2026年10月17日
+ */
+public final class ProcessTrees {
+
+    private ProcessTrees() {
+    }
+
+    /**
+     * 强制结束进程及其全部后代进程
+     */
+    public static void destroyForcibly(Process process) {
+        destroyForcibly(process.toHandle());
+    }
+
+    public static void destroyForcibly(ProcessHandle root) {
+        // 父进程结束后子进程会被重新挂到init下，必须在结束父进程之前取得后代列表
+        List<ProcessHandle> descendants = root.descendants().collect(Collectors.toList());
+        root.destroyForcibly();
+        for (ProcessHandle descendant : descendants) {
+            descendant.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.jeckchen.demo.benchmark;
+
+import com.jeckchen.demo.util.ControlCharFilter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ControlCharFilterBenchmark.java
+ * @description 控制字符过滤器与原正则实现的对比基准，直接运行main方法即可
+ * @date 2026年10月17日
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlCharFilterBenchmark {
+
+    private static final String REGEX = "[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]";
+
+    /** 输出类型：纯文本日志、带颜色的ls输出、含退格等需过滤字符的交互输出 */
+    @Param({"plain", "ansi", "dirty"})
+    public String kind;
+
+    private String chunk;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1024) {
+            switch (kind) {
+                case "plain":
+                    builder.append("2025-01-01 12:00:00.123  INFO 4242 --- [main] c.j.demo.Service : 处理请求完成 id=42\r\n");
+                    break;
+                case "ansi":
+                    builder.append("\u001B[0m\u001B[01;34mdocs\u001B[0m  \u001B[01;32mmvnw\u001B[0m  pom.xml  \u001B[01;34msrc\u001B[0m\r\n");
+                    break;
+                default:
+                    builder.append("user@host:~$ ls -la\b\b\b\u0008 \u0007\u0000\u007Fdrwxr-xr-x 2 user user 4096 .\r\n");
+            }
+        }
+        chunk = builder.toString();
+    }
+
+    @Benchmark
+    public String regex() {
+        return chunk.replaceAll(REGEX, "");
+    }
+
+    @Benchmark
+    public String strictFilter() {
+        return ControlCharFilter.STRICT.filter(chunk);
+    }
+
+    @Benchmark
+    public String xtermFilter() {
+        return ControlCharFilter.XTERM.filter(chunk);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ControlCharFilterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.jeckchen.demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeckchen.demo.handler.TerminalFrameEncoder;
+import com.jeckchen.demo.util.ControlCharFilter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalFrameEncoderBenchmark.java
+ * @description 终端帧编码器与 正则过滤+HashMap+ObjectMapper 原实现的对比基准，直接运行main方法即可
+ * @date 2026年10月17日
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminalFrameEncoderBenchmark {
+
+    /** 帧大小：单次读取的1KB与合并后的32KB */
+    @Param({"1024", "32768"})
+    public int frameSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.STRICT);
+    // 与终端输出帧一样复用连接通道上的缓冲区
+    private final StringBuilder buffer = new StringBuilder(1024);
+
+    private String data;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < frameSize) {
+            builder.append("\u001B[01;34msrc\u001B[0m  \"pom.xml\"  C:\\Users\\dev  构建完成\r\n");
+        }
+        data = builder.substring(0, frameSize);
+    }
+
+    @Benchmark
+    public String objectMapper() throws JsonProcessingException {
+        String cleanData = data.replaceAll("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]", "");
+        Map<String, String> messageMap = new HashMap<>();
+        messageMap.put("type", "output");
+        messageMap.put("data", cleanData);
+        return objectMapper.writeValueAsString(messageMap);
+    }
+
+    @Benchmark
+    public String frameEncoder() {
+        return encoder.encode(buffer, "output", data, -1, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TerminalFrameEncoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.jeckchen.demo.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeckchen.demo.util.ControlCharFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalFrameEncoderTest.java
+ * @description 终端帧编码器的单元测试，覆盖JSON转义、两种控制字符过滤模式以及缓冲区复用
+ * @date 2026年10月17日
+ */
+class TerminalFrameEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void escapesQuotesBackslashesAndWhitespace() throws Exception {
+        TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.STRICT);
+        String data = "say \"hi\"\\path\r\n\ttab 中文";
+
+        String frame = encoder.encode("output", data);
+
+        assertThat(frame).isEqualTo("{\"type\":\"output\",\"data\":\"say \\\"hi\\\"\\\\path\\r\\n\\ttab 中文\"}");
+        assertThat(objectMapper.readTree(frame).get("data").asText()).isEqualTo(data);
+    }
+
+    @Test
+    void strictFilterRemovesControlCharsAndDel() throws Exception {
+        TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.STRICT);
+
+        String frame = encoder.encode("output", "a\u001b[31mb\u0007c\u0000d\u007fe\bf\n");
+
+        assertThat(frame).isEqualTo("{\"type\":\"output\",\"data\":\"a[31mbcdef\\n\"}");
+        assertThat(objectMapper.readTree(frame).get("data").asText())
+                .isEqualTo(ControlCharFilter.STRICT.filter("a\u001b[31mb\u0007c\u0000d\u007fe\bf\n"));
+    }
+
+    @Test
+    void xtermFilterKeepsEscapeSequencesAsUnicodeEscapes() throws Exception {
+        TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.XTERM);
+        String data = "\u001b[31mred\u001b[0m\u0007\b\u000b\f\u000e\u000f";
+
+        String frame = encoder.encode("output", data + "\u0000\u007f\u0001");
+
+        assertThat(frame).isEqualTo("{\"type\":\"output\",\"data\":\""
+                + "\\u001b[31mred\\u001b[0m\\u0007\\u0008\\u000b\\u000c\\u000e\\u000f\"}");
+        assertThat(objectMapper.readTree(frame).get("data").asText()).isEqualTo(data);
+    }
+
+    @Test
+    void typeIsEscapedButNotFiltered() throws Exception {
+        TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.STRICT);
+
+        String frame = encoder.encode("a\"\u0001", "x");
+
+        assertThat(objectMapper.readTree(frame).get("type").asText()).isEqualTo("a\"\u0001");
+    }
+
+    @Test
+    void writesOffsetAndChannelOnlyWhenSet() throws Exception {
+        TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.STRICT);
+
+        assertThat(encoder.encode("output", "x", -1, 0)).isEqualTo("{\"type\":\"output\",\"data\":\"x\"}");
+        JsonNode frame = objectMapper.readTree(encoder.encode("output", "x", 42, 3));
+        assertThat(frame.get("offset").asLong()).isEqualTo(42);
+        assertThat(frame.get("channel").asInt()).isEqualTo(3);
+    }
+
+    @Test
+    void reusedBufferDoesNotLeakPreviousFrame() {
+        TerminalFrameEncoder encoder = new TerminalFrameEncoder(ControlCharFilter.STRICT);
+        StringBuilder buffer = new StringBuilder();
+
+        encoder.encode(buffer, "output", "a much longer first frame", 10, 0);
+        String second = encoder.encode(buffer, "output", "b", -1, 0);
+
+        assertThat(second).isEqualTo("{\"type\":\"output\",\"data\":\"b\"}");
+    }
+}
@@ -0,0 +1,214 @@
+package com.jeckchen.demo.handler;
+
+import com.jeckchen.demo.handler.TerminalOutboundQueue.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalOutboundQueueTest.java
+ * @description WebSocket发送队列的单元测试，覆盖三种溢出策略和多通道轮转发送
+ * 发送任务交给手动执行的执行器，测试可以控制消息在队列中积压
+ * @date 2026年10月17日
+ */
+class TerminalOutboundQueueTest {
+
+    private static final long MAX_QUEUED_BYTES = 10;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TerminalOutboundQueue.Meters meters = new TerminalOutboundQueue.Meters(meterRegistry);
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final List<String> sent = new ArrayList<>();
+    private final List<CloseStatus> closeStatuses = new ArrayList<>();
+    private final WebSocketSession session = fakeSession();
+
+    @Test
+    void dropOldestDiscardsOldestMessageOfSameChannel() {
+        TerminalOutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST);
+
+        queue.enqueue(message("a1"), 4);
+        queue.enqueue(message("a2"), 4);
+        queue.enqueue(message("a3"), 4);
+        runTasks();
+
+        assertThat(sent).containsExactly("a2", "a3");
+        assertThat(droppedCount()).isEqualTo(1);
+        assertThat(queuedBytes()).isZero();
+    }
+
+    @Test
+    void dropOldestFallsBackToLargestLane() {
+        TerminalOutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST);
+
+        queue.enqueue(1, message("a1"), 4);
+        queue.enqueue(1, message("a2"), 4);
+        queue.enqueue(2, message("b1"), 4);
+        runTasks();
+
+        assertThat(sent).containsExactly("a2", "b1");
+        assertThat(droppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void disconnectClosesSessionAndDropsMessage() {
+        TerminalOutboundQueue queue = queue(OverflowPolicy.DISCONNECT);
+
+        queue.enqueue(message("a1"), 6);
+        queue.enqueue(message("a2"), 6);
+        runTasks();
+        queue.enqueue(message("a3"), 1);
+        runTasks();
+
+        assertThat(sent).doesNotContain("a2", "a3");
+        assertThat(closeStatuses).containsExactly(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(droppedCount()).isEqualTo(1);
+        assertThat(queuedBytes()).isZero();
+    }
+
+    @Test
+    void pauseKeepsMessagesAndBlocksReaderUntilDrained() throws Exception {
+        TerminalOutboundQueue queue = queue(OverflowPolicy.PAUSE);
+        queue.enqueue(message("a1"), 6);
+        queue.enqueue(message("a2"), 6);
+
+        Thread reader = new Thread(() -> {
+            try {
+                queue.awaitCapacity();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reader.start();
+        awaitState(reader, Thread.State.WAITING);
+
+        runTasks();
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(reader.isAlive()).isFalse();
+        assertThat(sent).containsExactly("a1", "a2");
+        assertThat(droppedCount()).isZero();
+    }
+
+    @Test
+    void pauseDoesNotBlockChannelWithSmallBacklog() throws Exception {
+        TerminalOutboundQueue queue = queue(OverflowPolicy.PAUSE);
+        queue.enqueue(1, message("a1"), 6);
+        queue.enqueue(1, message("a2"), 6);
+        queue.enqueue(2, message("b1"), 1);
+
+        // 通道2的积压低于平均份额，立即返回
+        queue.awaitCapacity(2);
+        queue.awaitCapacity(3);
+    }
+
+    @Test
+    void closeReleasesPausedReaderAndIgnoresLaterMessages() throws Exception {
+        TerminalOutboundQueue queue = queue(OverflowPolicy.PAUSE);
+        queue.enqueue(message("a1"), 6);
+        queue.enqueue(message("a2"), 6);
+        Thread reader = new Thread(() -> {
+            try {
+                queue.awaitCapacity();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reader.start();
+        awaitState(reader, Thread.State.WAITING);
+
+        queue.close();
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+        queue.enqueue(message("a3"), 1);
+        runTasks();
+
+        assertThat(reader.isAlive()).isFalse();
+        assertThat(sent).isEmpty();
+        assertThat(queuedBytes()).isZero();
+    }
+
+    @Test
+    void lanesAreSentRoundRobin() {
+        TerminalOutboundQueue queue = new TerminalOutboundQueue(session, 1024, OverflowPolicy.DROP_OLDEST,
+                tasks::add, meters);
+
+        queue.enqueue(1, message("a1"), 1);
+        queue.enqueue(1, message("a2"), 1);
+        queue.enqueue(1, message("a3"), 1);
+        queue.enqueue(2, message("b1"), 1);
+        queue.enqueue(3, message("c1"), 1);
+        queue.enqueue(2, message("b2"), 1);
+        runTasks();
+
+        assertThat(sent).containsExactly("a1", "b1", "c1", "a2", "b2", "a3");
+        // 只提交了一个发送任务
+        assertThat(tasks).isEmpty();
+    }
+
+    private TerminalOutboundQueue queue(OverflowPolicy policy) {
+        return new TerminalOutboundQueue(session, MAX_QUEUED_BYTES, policy, tasks::add, meters);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.pollFirst()) != null) {
+            task.run();
+        }
+    }
+
+    private double droppedCount() {
+        return meterRegistry.get("terminal.outbound.dropped").counter().count();
+    }
+
+    private double queuedBytes() {
+        return meterRegistry.get("terminal.outbound.queued.bytes").gauge().value();
+    }
+
+    private static TextMessage message(String text) {
+        return new TextMessage(text);
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(thread.getState()).isEqualTo(state);
+    }
+
+    /**
+     * 只实现队列用到的方法：记录发送的文本和关闭状态
+     */
+    private WebSocketSession fakeSession() {
+        boolean[] open = {true};
+        return (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebSocketSession.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isOpen":
+                            return open[0];
+                        case "getId":
+                            return "test";
+                        case "sendMessage":
+                            sent.add(((TextMessage) args[0]).getPayload());
+                            return null;
+                        case "close":
+                            open[0] = false;
+                            closeStatuses.add(args == null ? CloseStatus.NORMAL : (CloseStatus) args[0]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,143 @@
+package com.jeckchen.demo.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalOutputAggregatorTest.java
+ * @description 终端输出合并器的单元测试，覆盖按帧大小立即发送、定时发送、二进制帧头和偏移量记录
+ * @date 2026年10月17日
+ */
+class TerminalOutputAggregatorTest {
+
+    // 足够长的合并等待时间，保证只有达到帧大小或手动flush时才发送
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<String> textFrames = new CopyOnWriteArrayList<>();
+    private final List<byte[]> binaryFrames = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void mergesChunksUntilFrameSizeIsReached() {
+        TerminalOutputAggregator aggregator = TerminalOutputAggregator.text(8, NEVER, scheduler, textFrames::add);
+
+        aggregator.append("abc");
+        aggregator.append("def");
+        assertThat(textFrames).isEmpty();
+        aggregator.append("gh");
+        aggregator.append("i");
+        aggregator.flush();
+
+        assertThat(textFrames).containsExactly("abcdefgh", "i");
+    }
+
+    @Test
+    void flushesAfterDelay() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        TerminalOutputAggregator aggregator = TerminalOutputAggregator.text(1024, 20, scheduler, frame -> {
+            textFrames.add(frame);
+            flushed.countDown();
+        });
+
+        aggregator.append("line 1\n");
+        aggregator.append("line 2\n");
+
+        assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(textFrames).containsExactly("line 1\nline 2\n");
+    }
+
+    @Test
+    void flushesAfterDelayOnExecutor() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        String[] flushThread = new String[1];
+        TerminalOutputAggregator aggregator = TerminalOutputAggregator.text(1024, 20, scheduler,
+                task -> new Thread(task, "flush-executor").start(), frame -> {
+                    flushThread[0] = Thread.currentThread().getName();
+                    textFrames.add(frame);
+                    flushed.countDown();
+                });
+
+        aggregator.append("x");
+
+        assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(textFrames).containsExactly("x");
+        assertThat(flushThread[0]).isEqualTo("flush-executor");
+    }
+
+    @Test
+    void zeroDelaySendsEveryChunk() {
+        TerminalOutputAggregator aggregator = TerminalOutputAggregator.text(1024, 0, scheduler, textFrames::add);
+
+        aggregator.append("a");
+        aggregator.append("b");
+
+        assertThat(textFrames).containsExactly("a", "b");
+    }
+
+    @Test
+    void closeDiscardsPendingOutput() throws Exception {
+        TerminalOutputAggregator aggregator = TerminalOutputAggregator.text(1024, 20, scheduler, textFrames::add);
+
+        aggregator.append("pending");
+        aggregator.close();
+        aggregator.flush();
+        Thread.sleep(100);
+
+        assertThat(textFrames).isEmpty();
+    }
+
+    @Test
+    void binaryFramesStartWithHeader() {
+        TerminalOutputAggregator aggregator = TerminalOutputAggregator.binary(4, NEVER, scheduler,
+                new byte[]{1, 7}, binaryFrames::add);
+        ByteBuffer chunk = ByteBuffer.wrap("xxabc".getBytes(StandardCharsets.US_ASCII));
+        chunk.position(2);
+
+        aggregator.append(chunk);
+        aggregator.append(new byte[]{'d', 'e'}, 0, 2);
+        aggregator.append(new byte[]{'f'}, 0, 1);
+        aggregator.flush();
+        aggregator.flush();
+
+        assertThat(chunk.position()).isEqualTo(2);
+        assertThat(binaryFrames).hasSize(2);
+        assertThat(binaryFrames.get(0)).containsExactly(1, 7, 'a', 'b', 'c', 'd', 'e');
+        assertThat(binaryFrames.get(1)).containsExactly(1, 7, 'f');
+    }
+
+    @Test
+    void endOffsetMatchesFrameBeingSent() {
+        TerminalOutputAggregator[] holder = new TerminalOutputAggregator[1];
+        List<Long> offsets = new CopyOnWriteArrayList<>();
+        holder[0] = TerminalOutputAggregator.text(4, NEVER, scheduler, frame -> {
+            textFrames.add(frame);
+            offsets.add(holder[0].getEndOffset());
+        });
+
+        holder[0].append("ab", 102);
+        holder[0].append("cd", 104);
+        holder[0].append("e", 105);
+        holder[0].flush();
+
+        assertThat(textFrames).containsExactly("abcd", "e");
+        assertThat(offsets).containsExactly(104L, 105L);
+    }
+}
@@ -0,0 +1,179 @@
+package com.jeckchen.demo.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalSessionTest.java
+ * @description 终端会话断线重连的单元测试，覆盖回滚缓冲区回绕后按偏移量补发、
+ * 偏移量已被覆盖时的截断处理以及补发后实时输出的偏移量连续
+ * @date 2026年10月17日
+ */
+class TerminalSessionTest {
+
+    private static final long GRACE_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final PipedOutputStream terminalOutput = new PipedOutputStream();
+    private TerminalSession session;
+
+    @AfterEach
+    void shutdown() throws IOException {
+        if (session != null) {
+            session.close();
+        }
+        terminalOutput.close();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void replaysFromOffsetAfterWrap() throws Exception {
+        RecordingSink first = start(16);
+        emit(first, "0123456789");
+        emit(first, "abcdefghij");
+        session.detach(first, GRACE_PERIOD_MILLIS);
+
+        RecordingSink second = new RecordingSink();
+        session.attach(second, 10);
+
+        assertThat(second.startOffset).isEqualTo(10);
+        assertThat(second.text()).isEqualTo("abcdefghij");
+        assertThat(second.endOffset).isEqualTo(20);
+    }
+
+    @Test
+    void overwrittenOffsetStartsFromOldestByte() throws Exception {
+        RecordingSink first = start(16);
+        emit(first, "0123456789");
+        emit(first, "abcdefghij");
+        session.detach(first, GRACE_PERIOD_MILLIS);
+
+        RecordingSink second = new RecordingSink();
+        session.attach(second, 2);
+
+        assertThat(second.startOffset).isEqualTo(4);
+        assertThat(second.text()).isEqualTo("456789abcdefghij");
+        assertThat(second.endOffset).isEqualTo(20);
+    }
+
+    @Test
+    void overwrittenOffsetSkipsTruncatedUtf8Character() throws Exception {
+        RecordingSink first = start(8);
+        // 共10字节，最早保留的位置2落在第一个“中”的中间
+        emit(first, "a中中x");
+        emit(first, "yz");
+        session.detach(first, GRACE_PERIOD_MILLIS);
+
+        RecordingSink second = new RecordingSink();
+        session.attach(second, 0);
+
+        assertThat(second.startOffset).isEqualTo(4);
+        assertThat(second.text()).isEqualTo("中xyz");
+        assertThat(second.endOffset).isEqualTo(10);
+    }
+
+    @Test
+    void upToDateOffsetReplaysNothingAndLiveOutputContinues() throws Exception {
+        RecordingSink first = start(16);
+        emit(first, "0123456789");
+        emit(first, "abcdefghij");
+        session.detach(first, GRACE_PERIOD_MILLIS);
+
+        RecordingSink second = new RecordingSink();
+        assertThat(session.attach(second, 20)).isNull();
+        assertThat(second.startOffset).isEqualTo(20);
+        assertThat(second.text()).isEmpty();
+
+        emit(second, "klm");
+        assertThat(second.text()).isEqualTo("klm");
+        assertThat(second.endOffset).isEqualTo(23);
+        assertThat(first.text()).isEqualTo("0123456789abcdefghij");
+    }
+
+    @Test
+    void newConnectionTakesOverAndReplaysFromOffset() throws Exception {
+        RecordingSink first = start(16);
+        emit(first, "0123456789");
+
+        RecordingSink second = new RecordingSink();
+        assertThat(session.attach(second, 6)).isSameAs(first);
+
+        assertThat(second.text()).isEqualTo("6789");
+        emit(second, "ab");
+        assertThat(first.text()).isEqualTo("0123456789");
+        assertThat(second.text()).isEqualTo("6789ab");
+    }
+
+    /**
+     * 创建会话并连接第一个接收方，输出泵在独立线程中读取管道
+     */
+    private RecordingSink start(int scrollbackSize) throws IOException {
+        session = new TerminalSession("token", null, OutputStream.nullOutputStream(), scrollbackSize, scheduler,
+                task -> new Thread(task, "terminal-pump").start(), () -> { });
+        RecordingSink sink = new RecordingSink();
+        session.attach(sink, 0);
+        session.start(new PipedInputStream(terminalOutput), null, StandardCharsets.UTF_8);
+        return sink;
+    }
+
+    /**
+     * 写入一段终端输出，等待它到达当前接收方
+     */
+    private void emit(RecordingSink current, String text) throws Exception {
+        long expected = current.endOffset + text.getBytes(StandardCharsets.UTF_8).length;
+        terminalOutput.write(text.getBytes(StandardCharsets.UTF_8));
+        terminalOutput.flush();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (current.endOffset < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(current.endOffset).isEqualTo(expected);
+    }
+
+    /**
+     * 记录收到的输出和偏移量
+     */
+    private static class RecordingSink implements TerminalSession.OutputSink {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private volatile long startOffset = -1;
+        private volatile long endOffset;
+
+        @Override
+        public void attached(String token, long startOffset) {
+            this.startOffset = startOffset;
+            this.endOffset = startOffset;
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length, long endOffset) {
+            received.write(bytes, offset, length);
+            this.endOffset = endOffset;
+        }
+
+        @Override
+        public void terminated(String error) {
+        }
+
+        @Override
+        public void awaitCapacity() {
+        }
+
+        synchronized String text() {
+            return received.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
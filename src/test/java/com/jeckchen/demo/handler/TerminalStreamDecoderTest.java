@@ -0,0 +1,102 @@
+package com.jeckchen.demo.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className TerminalStreamDecoderTest.java
+ * @description 终端输出增量解码器的单元测试，覆盖多字节字符被读取边界截断、流结束残留字节和转码为UTF-8
+ * @date 2026年10月17日
+ */
+class TerminalStreamDecoderTest {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    @Test
+    void keepsSplitUtf8CharacterForNextRead() {
+        TerminalStreamDecoder decoder = new TerminalStreamDecoder(StandardCharsets.UTF_8, 64);
+        byte[] bytes = "中".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(decoder.decode(bytes, 0, 1).toString()).isEmpty();
+        assertThat(decoder.pendingBytes()).isEqualTo(1);
+        assertThat(decoder.decode(bytes, 1, 1).toString()).isEmpty();
+        assertThat(decoder.pendingBytes()).isEqualTo(2);
+        assertThat(decoder.decode(bytes, 2, 1).toString()).isEqualTo("中");
+        assertThat(decoder.pendingBytes()).isZero();
+    }
+
+    @Test
+    void decodesUtf8SplitAtEveryBoundary() {
+        String text = "ls -l 目录 😀 done\n";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int split = 1; split < bytes.length; split++) {
+            TerminalStreamDecoder decoder = new TerminalStreamDecoder(StandardCharsets.UTF_8, 64);
+            String decoded = decoder.decode(bytes, 0, split).toString()
+                    + decoder.decode(bytes, split, bytes.length - split);
+            assertThat(decoded).as("split at %d", split).isEqualTo(text);
+            assertThat(decoder.pendingBytes()).isZero();
+        }
+    }
+
+    @Test
+    void decodesGbkReadByteByByte() {
+        String text = "文件已保存";
+        byte[] bytes = text.getBytes(GBK);
+        TerminalStreamDecoder decoder = new TerminalStreamDecoder(GBK, 8);
+
+        StringBuilder decoded = new StringBuilder();
+        for (int i = 0; i < bytes.length; i++) {
+            decoded.append(decoder.decode(bytes, i, 1));
+        }
+
+        assertThat(decoded.toString()).isEqualTo(text);
+    }
+
+    @Test
+    void finishReplacesIncompleteTailAndResets() {
+        TerminalStreamDecoder decoder = new TerminalStreamDecoder(StandardCharsets.UTF_8, 64);
+        byte[] bytes = "a中".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(decoder.decode(bytes, 0, 2).toString()).isEqualTo("a");
+        assertThat(decoder.finish().toString()).isEqualTo("�");
+        assertThat(decoder.pendingBytes()).isZero();
+        assertThat(decoder.decode(bytes, 0, bytes.length).toString()).isEqualTo("a中");
+    }
+
+    @Test
+    void acceptsReadsLargerThanBufferSize() {
+        String text = "中文输出".repeat(100);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        TerminalStreamDecoder decoder = new TerminalStreamDecoder(StandardCharsets.UTF_8, 16);
+
+        String decoded = decoder.decode(bytes, 0, bytes.length - 1).toString()
+                + decoder.decode(bytes, bytes.length - 1, 1);
+
+        assertThat(decoded).isEqualTo(text);
+    }
+
+    @Test
+    void transcodesSplitGbkToCompleteUtf8() {
+        byte[] bytes = "编译成功".getBytes(GBK);
+        TerminalStreamDecoder decoder = new TerminalStreamDecoder(GBK, 64);
+
+        String first = utf8(decoder.transcodeToUtf8(bytes, 0, 3));
+        String second = utf8(decoder.transcodeToUtf8(bytes, 3, bytes.length - 3));
+
+        assertThat(first).isEqualTo("编");
+        assertThat(second).isEqualTo("译成功");
+    }
+
+    private static String utf8(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
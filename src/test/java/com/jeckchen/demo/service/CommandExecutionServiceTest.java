@@ -0,0 +1,78 @@
+package com.jeckchen.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className CommandExecutionServiceTest.java
+ * @description SSE命令执行的测试，取消命令后应发送cancelled事件并立即结束连接，而不是等到连接超时
+ * @date 2026年10月17日
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CommandExecutionServiceTest {
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void cancelEndsEventStream() {
+        assertTimeoutPreemptively(Duration.ofSeconds(15), () -> {
+            HttpRequest request = HttpRequest.newBuilder(uri("/api/terminal/execute-stream"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"command\":\"sleep 100\",\"timeoutSeconds\":60}"))
+                    .build();
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            assertThat(response.statusCode()).isEqualTo(200);
+
+            List<String> events = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String commandId = null;
+                String line;
+                while (commandId == null && (line = reader.readLine()) != null) {
+                    if (line.startsWith("id:")) {
+                        commandId = line.substring(3).trim();
+                    }
+                }
+                assertThat(commandId).isNotNull();
+
+                HttpResponse<String> cancel = client.send(
+                        HttpRequest.newBuilder(uri("/api/terminal/commands/" + commandId)).DELETE().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertThat(cancel.body()).contains(commandId);
+
+                // 连接结束后readLine返回null，未结束时由超时判定失败
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("event:")) {
+                        events.add(line.substring(6).trim());
+                    }
+                }
+            }
+            assertThat(events).containsExactly("cancelled");
+        });
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
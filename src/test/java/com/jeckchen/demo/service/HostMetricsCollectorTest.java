@@ -0,0 +1,104 @@
+package com.jeckchen.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className HostMetricsCollectorTest.java
+ * @description 主机指标计数器速率计算的单元测试
+ * @date 2026年10月17日
+ */
+class HostMetricsCollectorTest {
+
+    // 每个设备的计数器个数，与HostMetricsCollector一致
+    private static final int COUNTERS = 4;
+
+    @Test
+    void firstSampleHasNoRate() {
+        HostMetricsCollector.CounterGroup group = new HostMetricsCollector.CounterGroup(List.of("sda"));
+        set(group, 0, 1000, 2000, 10, 20);
+
+        group.computeRates(1.0);
+
+        assertThat(group.rates).containsOnly(0.0);
+    }
+
+    @Test
+    void ratesAreDeltasPerSecond() {
+        HostMetricsCollector.CounterGroup group = new HostMetricsCollector.CounterGroup(List.of("sda", "nvme0n1"));
+        set(group, 0, 1000, 2000, 10, 20);
+        set(group, 1, 0, 0, 0, 0);
+        group.computeRates(0);
+
+        set(group, 0, 1000 + 4096, 2000 + 8192, 12, 20);
+        set(group, 1, 512, 0, 1, 0);
+        group.computeRates(2.0);
+
+        assertThat(group.rates[0]).isCloseTo(2048, within(1e-9));
+        assertThat(group.rates[1]).isCloseTo(4096, within(1e-9));
+        assertThat(group.rates[2]).isCloseTo(1, within(1e-9));
+        assertThat(group.rates[3]).isZero();
+        assertThat(group.rates[COUNTERS]).isCloseTo(256, within(1e-9));
+        assertThat(group.rates[COUNTERS + 2]).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    void counterWraparoundOrResetGivesZeroRate() {
+        HostMetricsCollector.CounterGroup group = new HostMetricsCollector.CounterGroup(List.of("eth0"));
+        set(group, 0, Long.MAX_VALUE - 10, 5000, 100, 100);
+        group.computeRates(1.0);
+
+        // 收字节计数器回绕、收包数随设备重置归零
+        set(group, 0, 42, 6000, 0, 150);
+        group.computeRates(1.0);
+
+        assertThat(group.rates[0]).isZero();
+        assertThat(group.rates[1]).isCloseTo(1000, within(1e-9));
+        assertThat(group.rates[2]).isZero();
+        assertThat(group.rates[3]).isCloseTo(50, within(1e-9));
+
+        // 回绕后的值作为新的基准
+        set(group, 0, 1042, 6000, 10, 150);
+        group.computeRates(0.5);
+        assertThat(group.rates[0]).isCloseTo(2000, within(1e-9));
+        assertThat(group.rates[2]).isCloseTo(20, within(1e-9));
+    }
+
+    @Test
+    void zeroIntervalKeepsPreviousRate() {
+        HostMetricsCollector.CounterGroup group = new HostMetricsCollector.CounterGroup(List.of("eth0"));
+        set(group, 0, 0, 0, 0, 0);
+        group.computeRates(1.0);
+        set(group, 0, 100, 0, 0, 0);
+        group.computeRates(1.0);
+
+        set(group, 0, 300, 0, 0, 0);
+        group.computeRates(0);
+
+        assertThat(group.rates[0]).isCloseTo(100, within(1e-9));
+        // 零间隔的采样仍会成为下一次的基准
+        set(group, 0, 400, 0, 0, 0);
+        group.computeRates(1.0);
+        assertThat(group.rates[0]).isCloseTo(100, within(1e-9));
+    }
+
+    @Test
+    void comparesDeviceNames() {
+        HostMetricsCollector.CounterGroup group = new HostMetricsCollector.CounterGroup(Arrays.asList("sda", "sdb"));
+
+        assertThat(group.hasNames(List.of("sda", "sdb"))).isTrue();
+        assertThat(group.hasNames(List.of("sdb", "sda"))).isFalse();
+        assertThat(group.hasNames(List.of("sda"))).isFalse();
+    }
+
+    private static void set(HostMetricsCollector.CounterGroup group, int device, long... values) {
+        System.arraycopy(values, 0, group.current, device * COUNTERS, COUNTERS);
+    }
+}
@@ -0,0 +1,127 @@
+package com.jeckchen.demo.service;
+
+import com.jeckchen.demo.dto.SystemMetricsHistory;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className SystemMetricsHistoryStoreTest.java
+ * @description 系统指标历史层级的单元测试，覆盖按步长合并、槽位复用和时钟回拨
+ * @date 2026年10月17日
+ */
+class SystemMetricsHistoryStoreTest {
+
+    private static final long RESOLUTION = 1000;
+    private static final int CAPACITY = 10;
+    // 与时间原点对齐的基准时间
+    private static final long BASE = 1_760_000_000_000L;
+
+    @Test
+    void mergesBucketsByStep() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+        tier.add(BASE, values(0.2, 100, 10, 5));
+        tier.add(BASE + 500, values(0.4, 300, 10, 7));
+        tier.add(BASE + 1200, values(0.9, 200, 10, 6));
+        tier.add(BASE + 3100, values(0.1, 50, 10, 4));
+
+        SystemMetricsHistory history = tier.query(BASE, BASE + 4000, 2000);
+
+        // 第二个点只有BASE+3000的槽位有数据
+        assertThat(history.getTimestamps()).containsExactly(BASE, BASE + 2000);
+        assertThat(history.getCpuLoad().getMin()[0]).isCloseTo(0.2, within(1e-9));
+        assertThat(history.getCpuLoad().getMax()[0]).isCloseTo(0.9, within(1e-9));
+        assertThat(history.getCpuLoad().getAvg()[0]).isCloseTo(0.5, within(1e-9));
+        assertThat(history.getUsedHeapMemory().getAvg()[0]).isCloseTo(200, within(1e-9));
+        assertThat(history.getThreadCount().getMax()[1]).isEqualTo(4);
+    }
+
+    @Test
+    void skipsStepsWithoutDataAndMissingValues() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+        tier.add(BASE, values(Double.NaN, 100, 10, 5));
+        tier.add(BASE + 5000, values(0.5, 100, 10, 5));
+
+        SystemMetricsHistory history = tier.query(BASE, BASE + 6000, 1000);
+
+        assertThat(history.getTimestamps()).containsExactly(BASE, BASE + 5000);
+        // CPU无法获取的采样不计入，该点的CPU为-1
+        assertThat(history.getCpuLoad().getAvg()).containsExactly(-1, 0.5);
+        assertThat(history.getUsedHeapMemory().getAvg()).containsExactly(100, 100);
+    }
+
+    @Test
+    void reusesSlotAfterRetention() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+        tier.add(BASE, values(0.1, 1, 1, 1));
+        // 正好晚一圈，落在同一个槽位上，覆盖旧时间段
+        long wrapped = BASE + RESOLUTION * CAPACITY;
+        tier.add(wrapped + 10, values(0.7, 2, 2, 2));
+
+        SystemMetricsHistory old = tier.query(BASE, BASE + RESOLUTION, RESOLUTION);
+        assertThat(old.getTimestamps()).isEmpty();
+
+        SystemMetricsHistory recent = tier.query(wrapped, wrapped + RESOLUTION, RESOLUTION);
+        assertThat(recent.getTimestamps()).containsExactly(wrapped);
+        // 旧时间段的计数已清零，不会与新采样合并
+        assertThat(recent.getCpuLoad().getMin()).containsExactly(0.7);
+        assertThat(recent.getThreadCount().getAvg()).containsExactly(2);
+    }
+
+    @Test
+    void keepsOnlyTheLastRetentionWindowAfterManyWraps() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+        for (int i = 0; i < CAPACITY * 3 + 4; i++) {
+            tier.add(BASE + i * RESOLUTION, values(0.5, i, 0, 0));
+        }
+        long newest = BASE + (CAPACITY * 3 + 3) * RESOLUTION;
+
+        SystemMetricsHistory history = tier.query(BASE, newest + RESOLUTION, RESOLUTION);
+
+        assertThat(history.getTimestamps()).hasSize(CAPACITY);
+        assertThat(history.getTimestamps()[0]).isEqualTo(newest - (CAPACITY - 1) * RESOLUTION);
+        assertThat(history.getUsedHeapMemory().getAvg()[CAPACITY - 1]).isEqualTo(CAPACITY * 3 + 3);
+    }
+
+    @Test
+    void ignoresSamplesOlderThanTheSlotAfterClockRollback() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+        long later = BASE + RESOLUTION * CAPACITY;
+        tier.add(later, values(0.8, 8, 8, 8));
+        // 时钟回拨一圈，槽位中已是更新的时间段
+        tier.add(BASE, values(0.1, 1, 1, 1));
+
+        assertThat(tier.query(BASE, BASE + RESOLUTION, RESOLUTION).getTimestamps()).isEmpty();
+        SystemMetricsHistory history = tier.query(later, later + RESOLUTION, RESOLUTION);
+        assertThat(history.getCpuLoad().getAvg()).containsExactly(0.8);
+    }
+
+    @Test
+    void queryFarOutsideRetentionWalksOnlyTheRetainedWindow() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+        tier.add(BASE, values(0.3, 3, 3, 3));
+
+        // 起点远早于保留范围，步长等于分辨率，逐点遍历整个区间会长时间占住锁
+        SystemMetricsHistory history = tier.query(-RESOLUTION * 1_000_000_000_000L, BASE + RESOLUTION, RESOLUTION);
+
+        assertThat(history.getTimestamps()).containsExactly(BASE);
+        assertThat(tier.query(0, RESOLUTION * 5, RESOLUTION).getTimestamps()).isEmpty();
+    }
+
+    @Test
+    void emptyTierReturnsNoPoints() {
+        SystemMetricsHistoryStore.Tier tier = new SystemMetricsHistoryStore.Tier(RESOLUTION, CAPACITY);
+
+        SystemMetricsHistory history = tier.query(BASE, BASE + 60_000, RESOLUTION);
+
+        assertThat(history.getTimestamps()).isEmpty();
+        assertThat(history.getCpuLoad().getAvg()).isEmpty();
+    }
+
+    private static double[] values(double cpuLoad, double usedHeap, double usedNonHeap, double threads) {
+        return new double[]{cpuLoad, usedHeap, usedNonHeap, threads};
+    }
+}
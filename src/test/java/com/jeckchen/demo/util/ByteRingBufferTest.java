@@ -0,0 +1,112 @@
+package com.jeckchen.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ByteRingBufferTest.java
+ * @description 定长字节环形缓冲区的单元测试，覆盖写满回绕和读取已被覆盖位置的情况
+ * @date 2026年10月17日
+ */
+class ByteRingBufferTest {
+
+    @Test
+    void readsBackWithinCapacity() {
+        ByteRingBuffer buffer = new ByteRingBuffer(8);
+        write(buffer, "abc");
+        write(buffer, "de");
+
+        assertThat(buffer.position()).isEqualTo(5);
+        assertThat(buffer.oldestPosition()).isZero();
+        assertThat(text(buffer.copyFrom(0))).isEqualTo("abcde");
+        assertThat(text(buffer.copyFrom(3))).isEqualTo("de");
+        assertThat(buffer.copyFrom(5)).isEmpty();
+    }
+
+    @Test
+    void wrapsAroundAndKeepsNewestBytes() {
+        ByteRingBuffer buffer = new ByteRingBuffer(8);
+        write(buffer, "012345");
+        // 跨越数组末尾写入
+        write(buffer, "6789");
+
+        assertThat(buffer.position()).isEqualTo(10);
+        assertThat(buffer.oldestPosition()).isEqualTo(2);
+        assertThat(text(buffer.copyFrom(2))).isEqualTo("23456789");
+        assertThat(text(buffer.copyFrom(7))).isEqualTo("789");
+
+        byte[] dest = new byte[5];
+        assertThat(buffer.read(5, dest, 1, 4)).isEqualTo(4);
+        assertThat(text(dest).substring(1)).isEqualTo("5678");
+    }
+
+    @Test
+    void overwrittenPositionStartsFromOldest() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        write(buffer, "abcdefg");
+
+        assertThat(buffer.oldestPosition()).isEqualTo(3);
+        assertThat(text(buffer.copyFrom(0))).isEqualTo("defg");
+        byte[] dest = new byte[10];
+        assertThat(buffer.read(1, dest, 0, dest.length)).isEqualTo(4);
+        assertThat(text(dest).substring(0, 4)).isEqualTo("defg");
+    }
+
+    @Test
+    void singleWriteLargerThanCapacityKeepsTail() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        write(buffer, "xy");
+        write(buffer, "0123456789");
+
+        assertThat(buffer.position()).isEqualTo(12);
+        assertThat(buffer.oldestPosition()).isEqualTo(8);
+        assertThat(text(buffer.copyFrom(8))).isEqualTo("6789");
+    }
+
+    @Test
+    void positionsKeepCountingAcrossManyWraps() {
+        ByteRingBuffer buffer = new ByteRingBuffer(5);
+        for (int i = 0; i < 1000; i++) {
+            write(buffer, String.valueOf((char) ('a' + i % 26)));
+        }
+
+        assertThat(buffer.position()).isEqualTo(1000);
+        assertThat(buffer.oldestPosition()).isEqualTo(995);
+        // 第995~999个字符
+        assertThat(text(buffer.copyFrom(995))).isEqualTo("hijkl");
+    }
+
+    @Test
+    void awaitDataReturnsOnWriteTimeoutOrClose() throws InterruptedException {
+        ByteRingBuffer buffer = new ByteRingBuffer(8);
+        assertThat(buffer.awaitData(0, 10)).isFalse();
+
+        write(buffer, "a");
+        assertThat(buffer.awaitData(0, 10)).isTrue();
+
+        Thread writer = new Thread(() -> write(buffer, "b"));
+        writer.start();
+        assertThat(buffer.awaitData(1, 5000)).isTrue();
+        writer.join();
+
+        buffer.close();
+        assertThat(buffer.isClosed()).isTrue();
+        assertThat(buffer.awaitData(2, 5000)).isFalse();
+        // 关闭前写入的数据仍可读取
+        assertThat(buffer.awaitData(1, 5000)).isTrue();
+    }
+
+    private static void write(ByteRingBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,55 @@
+package com.jeckchen.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ControlCharFilterTest.java
+ * @description 控制字符过滤器的单元测试，对照原正则检查STRICT模式，并检查XTERM模式保留的控制字符
+ * @date 2026年10月17日
+ */
+class ControlCharFilterTest {
+
+    // 过滤器替代的原正则
+    private static final String LEGACY_PATTERN = "[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]";
+
+    @Test
+    void strictMatchesLegacyRegexForEveryAsciiChar() {
+        for (char c = 0; c < 256; c++) {
+            String data = "a" + c + "b";
+            assertThat(ControlCharFilter.STRICT.filter(data))
+                    .as("char 0x%02x", (int) c)
+                    .isEqualTo(data.replaceAll(LEGACY_PATTERN, ""));
+        }
+    }
+
+    @Test
+    void xtermKeepsCharsInterpretedByTerminal() {
+        String kept = "\u001b[1m\u0007\b\u000b\f\u000e\u000f\t\r\n";
+
+        assertThat(ControlCharFilter.XTERM.filter(kept)).isSameAs(kept);
+        assertThat(ControlCharFilter.XTERM.filter("x\u0000\u0001\u001f\u007fy")).isEqualTo("xy");
+    }
+
+    @Test
+    void returnsSameInstanceWhenNothingIsRemoved() {
+        String data = "plain 中文 text\n";
+
+        assertThat(ControlCharFilter.STRICT.filter(data)).isSameAs(data);
+        assertThat(ControlCharFilter.STRICT.filter("")).isEmpty();
+    }
+
+    @Test
+    void removesAllCharsWhenEveryCharIsFiltered() {
+        assertThat(ControlCharFilter.STRICT.filter("\u0000\u0001\u007f")).isEmpty();
+    }
+
+    @Test
+    void ofSelectsModeByFlag() {
+        assertThat(ControlCharFilter.of(true)).isSameAs(ControlCharFilter.XTERM);
+        assertThat(ControlCharFilter.of(false)).isSameAs(ControlCharFilter.STRICT);
+    }
+}
@@ -0,0 +1,217 @@
+package com.jeckchen.demo.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author JeckChen
+ * @version 1.0.0
+ * @className ProcFileReaderTest.java
+ * @description /proc文件读取与解析的单元测试，使用截取自真实系统的文件内容
+ * @date 2026年10月17日
+ */
+class ProcFileReaderTest {
+
+    private static final byte[] CPU = bytes("cpu");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesCpuLinesOfProcStat() throws IOException {
+        Path file = write("stat",
+                "cpu  10132153 290696 3084719 46828483 16683 0 25195 0 175628 0\n"
+                        + "cpu0 1393280 32966 572056 13343292 6130 0 17875 0 23933 0\n"
+                        + "cpu12 1335 42 113 99887 12 0 3 0 0 0\n"
+                        + "intr 199292939 0 0 0\n");
+        ProcFileReader reader = new ProcFileReader(file.toString(), 256);
+
+        assertThat(reader.load()).isTrue();
+        assertThat(reader.nextLine()).isTrue();
+        assertThat(reader.lineStartsWith(CPU)).isTrue();
+        assertThat(reader.nextToken()).isTrue();
+        assertThat(reader.tokenEquals(CPU)).isTrue();
+        // 整机行没有核号后缀
+        assertThat(reader.tokenSuffixAsLong(CPU.length)).isEqualTo(-1);
+        assertThat(reader.nextLong()).isEqualTo(10132153);
+        reader.skipTokens(2);
+        assertThat(reader.nextLong()).isEqualTo(46828483);
+
+        reader.nextLine();
+        reader.nextToken();
+        assertThat(reader.tokenSuffixAsLong(CPU.length)).isZero();
+        reader.nextLine();
+        reader.nextToken();
+        assertThat(reader.tokenSuffixAsLong(CPU.length)).isEqualTo(12);
+
+        assertThat(reader.nextLine()).isTrue();
+        assertThat(reader.lineStartsWith(CPU)).isFalse();
+        assertThat(reader.nextLine()).isFalse();
+        reader.close();
+    }
+
+    @Test
+    void parsesLoadAverageDecimals() throws IOException {
+        Path file = write("loadavg", "0.52 1.07 12.5 2/613 48213\n");
+        ProcFileReader reader = new ProcFileReader(file.toString(), 256);
+
+        assertThat(reader.load()).isTrue();
+        assertThat(reader.nextLine()).isTrue();
+        assertThat(reader.nextDecimal()).isCloseTo(0.52, within(1e-9));
+        assertThat(reader.nextDecimal()).isCloseTo(1.07, within(1e-9));
+        assertThat(reader.nextDecimal()).isCloseTo(12.5, within(1e-9));
+        // "2/613"不是小数
+        assertThat(reader.nextDecimal()).isEqualTo(-1);
+        assertThat(reader.nextDecimal()).isEqualTo(48213);
+        assertThat(reader.nextDecimal()).isEqualTo(-1);
+        reader.close();
+    }
+
+    @Test
+    void rejectsMalformedNumbers() throws IOException {
+        Path file = write("numbers", "12a -5 1.2.3 . 007\n");
+        ProcFileReader reader = new ProcFileReader(file.toString(), 256);
+
+        reader.load();
+        reader.nextLine();
+        assertThat(reader.nextLong()).isEqualTo(-1);
+        assertThat(reader.nextLong()).isEqualTo(-1);
+        assertThat(reader.nextDecimal()).isEqualTo(-1);
+        assertThat(reader.nextDecimal()).isEqualTo(-1);
+        assertThat(reader.nextLong()).isEqualTo(7);
+        // 行尾之后没有字段
+        assertThat(reader.nextLong()).isEqualTo(-1);
+        reader.close();
+    }
+
+    @Test
+    void splitsMeminfoOnColons() throws IOException {
+        Path file = write("meminfo",
+                "MemTotal:       16303428 kB\r\n"
+                        + "MemFree:         1234567 kB\r\n"
+                        + "MemAvailable:   10293840 kB\r\n");
+        ProcFileReader reader = new ProcFileReader(file.toString(), 256);
+
+        reader.load();
+        reader.nextLine();
+        reader.nextToken();
+        assertThat(reader.tokenEquals(bytes("MemTotal"))).isTrue();
+        assertThat(reader.tokenEquals(bytes("MemTotal:"))).isFalse();
+        assertThat(reader.nextLong()).isEqualTo(16303428);
+        assertThat(reader.nextToken()).isTrue();
+        assertThat(reader.tokenString()).isEqualTo("kB");
+        // \r也是分隔符，不会粘在最后一个字段上
+        assertThat(reader.nextToken()).isFalse();
+
+        reader.nextLine();
+        reader.nextLine();
+        reader.nextToken();
+        assertThat(reader.tokenStartsWith(bytes("MemAvail"))).isTrue();
+        assertThat(reader.nextLong()).isEqualTo(10293840);
+        reader.close();
+    }
+
+    @Test
+    void parsesNetDevWithAndWithoutSpaceAfterInterfaceName() throws IOException {
+        Path file = write("dev",
+                "Inter-|   Receive                                                |  Transmit\n"
+                        + " face |bytes    packets errs drop fifo frame compressed multicast|bytes    packets\n"
+                        + "    lo:  123456     789    0    0    0     0          0         0   123456     789\n"
+                        + "  eth0:98765432 654321    0    0    0     0          0         0 12345678  43210\n");
+        ProcFileReader reader = new ProcFileReader(file.toString(), 256);
+
+        reader.load();
+        reader.nextLine();
+        reader.nextLine();
+        reader.nextLine();
+        reader.nextToken();
+        assertThat(reader.tokenString()).isEqualTo("lo");
+        assertThat(reader.nextLong()).isEqualTo(123456);
+
+        reader.nextLine();
+        reader.nextToken();
+        assertThat(reader.tokenEquals(bytes("eth0"))).isTrue();
+        assertThat(reader.nextLong()).isEqualTo(98765432);
+        assertThat(reader.nextLong()).isEqualTo(654321);
+        reader.skipTokens(6);
+        assertThat(reader.nextLong()).isEqualTo(12345678);
+        assertThat(reader.nextLong()).isEqualTo(43210);
+        reader.close();
+    }
+
+    @Test
+    void skipsProcessNameContainingSpacesAndParentheses() throws IOException {
+        Path file = write("pid-stat", "4242 (tmux: server (1)) S 1 4242 4242 0 -1 4194560 1020 0 0 0 37 12 0 0 20 0 1\n");
+        ProcFileReader reader = new ProcFileReader(256);
+
+        assertThat(reader.load(file.toString())).isTrue();
+        reader.nextLine();
+        assertThat(reader.nextLong()).isEqualTo(4242);
+        assertThat(reader.skipPastLast((byte) ')')).isTrue();
+        assertThat(reader.nextToken()).isTrue();
+        assertThat(reader.tokenString()).isEqualTo("S");
+        assertThat(reader.nextLong()).isEqualTo(1);
+        // utime、stime位于状态之后第11、12个字段
+        reader.skipTokens(9);
+        assertThat(reader.nextLong()).isEqualTo(37);
+        assertThat(reader.nextLong()).isEqualTo(12);
+    }
+
+    @Test
+    void growsBufferAndRereadsChangedFile() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            large.append("line").append(i).append(' ').append(i * 1000L).append('\n');
+        }
+        Path file = write("large", large.toString());
+        ProcFileReader reader = new ProcFileReader(file.toString(), 256);
+
+        assertThat(reader.load()).isTrue();
+        int lines = 0;
+        long last = -1;
+        while (reader.nextLine()) {
+            reader.nextToken();
+            last = reader.nextLong();
+            lines++;
+        }
+        assertThat(lines).isEqualTo(200);
+        assertThat(last).isEqualTo(199000);
+
+        // 文件保持打开，再次load读取的是新内容
+        Files.write(file, "line 1\n".getBytes(StandardCharsets.US_ASCII));
+        assertThat(reader.load()).isTrue();
+        assertThat(reader.nextLine()).isTrue();
+        reader.nextToken();
+        assertThat(reader.nextLong()).isEqualTo(1);
+        assertThat(reader.nextLine()).isFalse();
+        reader.close();
+    }
+
+    @Test
+    void reportsMissingFiles() {
+        ProcFileReader reader = new ProcFileReader(dir.resolve("missing").toString(), 256);
+
+        assertThat(reader.load()).isFalse();
+        assertThat(reader.nextLine()).isFalse();
+        assertThat(reader.load(dir.resolve("gone").toString())).isFalse();
+        assertThat(reader.nextLine()).isFalse();
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}